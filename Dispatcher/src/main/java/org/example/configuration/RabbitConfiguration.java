@@ -2,13 +2,20 @@ package org.example.configuration;
 
 
 import lombok.Getter;
+import org.example.utils.QueuePartitions;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 
 @Getter
 @Configuration
@@ -26,28 +33,56 @@ public class RabbitConfiguration {
     @Value("${spring.rabbitmq.queues.answer-message}")
     private String answerMessageQueue;
 
+    @Value("${spring.rabbitmq.partitions}")
+    private int partitions;
+
+    public String textMessageUpdateQueueOf(Long chatId) {
+        return QueuePartitions.queueOf(textMessageUpdateQueue, chatId, partitions);
+    }
+
+    public String docMessageUpdateQueueOf(Long chatId) {
+        return QueuePartitions.queueOf(docMessageUpdateQueue, chatId, partitions);
+    }
+
+    public String photoMessageUpdateQueueOf(Long chatId) {
+        return QueuePartitions.queueOf(photoMessageUpdateQueue, chatId, partitions);
+    }
+
     @Bean
     public MessageConverter jsonMessageConvertor(){
         return new Jackson2JsonMessageConverter();
     }
 
     @Bean
-    public Queue textMessageQueue(){
-        return new Queue(textMessageUpdateQueue);
+    public Declarables textMessageQueue(){
+        return partitionedQueues(textMessageUpdateQueue);
     }
 
     @Bean
-    public Queue docMessageQueue(){
-        return new Queue(docMessageUpdateQueue);
+    public Declarables docMessageQueue(){
+        return partitionedQueues(docMessageUpdateQueue);
     }
 
     @Bean
-    public Queue photoMessageQueue(){
-        return new Queue(photoMessageUpdateQueue);
+    public Declarables photoMessageQueue(){
+        return partitionedQueues(photoMessageUpdateQueue);
     }
 
     @Bean
     public Queue answerMessageQueue(){
         return new Queue(answerMessageQueue);
     }
+
+    private Declarables partitionedQueues(String queue) {
+        // a single active consumer keeps each partition serial, also when node runs several consumers on it;
+        // partitions are per message type, so a chat's text can still be handled before its earlier document
+        int count = Math.max(partitions, 1);
+        List<Declarable> queues = new ArrayList<>(count);
+        for (int partition = 0; partition < count; partition++) {
+            queues.add(QueueBuilder.durable(QueuePartitions.nameOf(queue, partition, partitions))
+                    .singleActiveConsumer()
+                    .build());
+        }
+        return new Declarables(queues);
+    }
 }
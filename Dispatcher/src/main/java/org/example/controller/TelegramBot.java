@@ -1,17 +1,26 @@
 package org.example.controller;
 
 import lombok.extern.log4j.Log4j;
+import org.example.service.AnswerSender;
+import org.example.service.UpdatePoller;
+import org.example.service.enums.BotMode;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramWebhookBot;
 import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updates.DeleteWebhook;
 import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import java.util.concurrent.CompletableFuture;
+
 
 @Component
 @Log4j
@@ -26,15 +35,36 @@ public class TelegramBot extends TelegramWebhookBot {
     @Value("${bot.uri}")
     private String botUri;
 
+    @Value("${bot.mode}")
+    private BotMode botMode;
+
     private final UpdateProcessor updateProcessor;
+    private final AnswerSender answerSender;
+    private final UpdatePoller updatePoller;
 
-    public TelegramBot(UpdateProcessor updateProcessor) {
+    public TelegramBot(UpdateProcessor updateProcessor, AnswerSender answerSender, UpdatePoller updatePoller,
+                       @Value("${sender.threads}") int senderThreads) {
+        super(botOptions(senderThreads));
         this.updateProcessor = updateProcessor;
+        this.answerSender = answerSender;
+        this.updatePoller = updatePoller;
+    }
+
+    private static DefaultBotOptions botOptions(int senderThreads) {
+        var options = new DefaultBotOptions();
+        options.setMaxThreads(senderThreads);
+        return options;
     }
 
     @EventListener(ApplicationReadyEvent.class)
     public void init(){
         updateProcessor.registerBot(this);
+        answerSender.registerBot(this);
+
+        if(BotMode.POLLING.equals(botMode)){
+            startPolling();
+            return;
+        }
 
         try {
             var setWebhook = SetWebhook.builder()
@@ -46,6 +76,15 @@ public class TelegramBot extends TelegramWebhookBot {
         }
     }
 
+    private void startPolling() {
+        try {
+            execute(new DeleteWebhook());
+        } catch (TelegramApiException e) {
+            log.error(e);
+        }
+        updatePoller.start(this);
+    }
+
     @Override
     public String getBotUsername() {
         return BOTUSERNAME;
@@ -57,13 +96,16 @@ public class TelegramBot extends TelegramWebhookBot {
     }
 
 
-    public void sendAnswerMessage(SendMessage message){
+    public CompletableFuture<Message> sendAnswerMessage(SendMessage message){
+        if(message == null){
+            return CompletableFuture.completedFuture(null);
+        }
+        return answerSender.send(message.getChatId(), message);
+    }
+
+    public void sendAnswerMessage(EditMessageText message){
         if(message != null){
-            try {
-                execute(message);
-            } catch (TelegramApiException e) {
-                log.error(e);
-            }
+            answerSender.send(message.getChatId(), message);
         }
     }
 
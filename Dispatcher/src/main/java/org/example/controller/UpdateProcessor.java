@@ -2,42 +2,215 @@ package org.example.controller;
 
 import lombok.extern.log4j.Log4j;
 import org.example.configuration.RabbitConfiguration;
+import org.example.dto.RawUpdate;
+import org.example.service.UpdateDeduplicator;
 import org.example.service.UpdateProducer;
 import org.example.utils.MessageUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
 
 @Component
 @Log4j
 public class UpdateProcessor {
+    private static final String FILE_RECEIVED_TEXT = "Файл получен, обрабатывается...";
+    private static final String UNSUPPORTED_MESSAGE_TYPE_TEXT = "Неподдерживаемый тип сообщения!";
+
     private TelegramBot telegramBot;
     private final MessageUtils messageUtils;
     private final UpdateProducer updateProducer;
     private final RabbitConfiguration rabbitConfiguration;
+    private final UpdateDeduplicator updateDeduplicator;
+    // per chat, the last publish still waiting for an ack; later updates of the chat are chained behind it
+    private final Map<Long, CompletableFuture<Void>> pendingPublishes = new ConcurrentHashMap<>();
+
+    @Value("${ingestion.inline-replies}")
+    private boolean inlineReplies;
 
-    public UpdateProcessor(MessageUtils messageUtils, UpdateProducer updateProducer, RabbitConfiguration rabbitConfiguration){
+    @Value("${ingestion.edit-in-place}")
+    private boolean editInPlace;
+
+    public UpdateProcessor(MessageUtils messageUtils, UpdateProducer updateProducer, RabbitConfiguration rabbitConfiguration,
+                           UpdateDeduplicator updateDeduplicator){
         this.messageUtils = messageUtils;
         this.updateProducer = updateProducer;
         this.rabbitConfiguration = rabbitConfiguration;
+        this.updateDeduplicator = updateDeduplicator;
     }
 
     public void registerBot(TelegramBot telegramBot){
         this.telegramBot = telegramBot;
     }
 
+    public SendMessage inlineReplyOf(Update update){
+        if(!inlineReplies || update == null || !update.hasMessage()){
+            return null;
+        }
+
+        var message = update.getMessage();
+        if(message.hasText()){
+            return null;
+        } else if(message.hasDocument() || message.hasPhoto()){
+            return editInPlace || message.getMediaGroupId() != null
+                    ? null : messageUtils.generateAnswerMessageWithText(update, FILE_RECEIVED_TEXT);
+        }
+        return messageUtils.generateAnswerMessageWithText(update, UNSUPPORTED_MESSAGE_TYPE_TEXT);
+    }
+
+    public SendMessage inlineReplyOf(RawUpdate rawUpdate){
+        if(!inlineReplies || !rawUpdate.hasMessage() || rawUpdate.getChatId() == null){
+            return null;
+        }
+
+        switch (rawUpdate.getMessageType()){
+            case TEXT:
+                return null;
+            case DOCUMENT:
+            case PHOTO:
+                return editInPlace || rawUpdate.getMediaGroupId() != null
+                        ? null : messageUtils.generateAnswerMessageWithText(rawUpdate.getChatId(), FILE_RECEIVED_TEXT);
+            default:
+                return messageUtils.generateAnswerMessageWithText(rawUpdate.getChatId(), UNSUPPORTED_MESSAGE_TYPE_TEXT);
+        }
+    }
+
     public void processUpdate(Update update){
-        if(update == null){
-            log.error("Received update is null");
+        if(isAccepted(update)){
+            distributeMessageByType(update);
+        }
+    }
+
+    public void processRawUpdate(RawUpdate rawUpdate){
+        if(rawUpdate.getUpdateId() == null){
+            log.error("Received update without update_id");
             return;
         }
 
-        if(update.hasMessage()){
-            distributeMessageByType(update);
+        if(updateDeduplicator.isDuplicate(rawUpdate.getUpdateId())){
+            log.debug("Skip redelivered update: " + rawUpdate.getUpdateId());
+            return;
+        }
+
+        if(!rawUpdate.hasMessage() || rawUpdate.getChatId() == null){
+            log.error("Receive unsupported message type: " + rawUpdate.getUpdateId());
+            return;
+        }
+
+        var chatId = rawUpdate.getChatId();
+        switch (rawUpdate.getMessageType()){
+            case TEXT:
+                var queue = rabbitConfiguration.textMessageUpdateQueueOf(chatId);
+                produceInChatOrder(chatId, null, () -> updateProducer.produce(queue, rawUpdate.getBody()));
+                break;
+            case DOCUMENT:
+                processRawFileMessage(rabbitConfiguration.docMessageUpdateQueueOf(chatId), rawUpdate);
+                break;
+            case PHOTO:
+                processRawFileMessage(rabbitConfiguration.photoMessageUpdateQueueOf(chatId), rawUpdate);
+                break;
+            default:
+                setWebhookView(messageUtils.generateAnswerMessageWithText(chatId, UNSUPPORTED_MESSAGE_TYPE_TEXT));
+        }
+    }
+
+    private void processRawFileMessage(String queue, RawUpdate rawUpdate) {
+        if(rawUpdate.getMediaGroupId() != null){
+            // album items get no ack, node answers the whole album once
+            produceInChatOrder(rawUpdate.getChatId(), null, () -> updateProducer.produce(queue, rawUpdate.getBody()));
+        } else if(editInPlace){
+            produceAfterAck(rawUpdate.getChatId(),
+                    ackMessageId -> updateProducer.produce(queue, rawUpdate.getBody(), ackMessageId));
         } else {
+            updateProducer.produce(queue, rawUpdate.getBody());
+            setWebhookView(messageUtils.generateAnswerMessageWithText(rawUpdate.getChatId(), FILE_RECEIVED_TEXT));
+        }
+    }
+
+    public void processUpdates(List<Update> updates){
+        var batches = new LinkedHashMap<String, List<Update>>();
+        var fileUpdates = new ArrayList<Update>();
+        var accepted = new ArrayList<Update>(updates.size());
+        // chats with a file waiting for its ack are published one update at a time instead of in batches
+        var chainedChats = new HashSet<Long>();
+
+        for(var update : updates){
+            if(!isAccepted(update)){
+                continue;
+            }
+            accepted.add(update);
+            var message = update.getMessage();
+            if(editInPlace && isAckedFile(message) || pendingPublishes.containsKey(message.getChatId())){
+                chainedChats.add(message.getChatId());
+            }
+        }
+
+        for(var update : accepted){
+            var message = update.getMessage();
+            String queue;
+            if(message.hasText()){
+                queue = rabbitConfiguration.textMessageUpdateQueueOf(message.getChatId());
+            } else if(message.hasDocument()){
+                queue = rabbitConfiguration.docMessageUpdateQueueOf(message.getChatId());
+            } else if(message.hasPhoto()){
+                queue = rabbitConfiguration.photoMessageUpdateQueueOf(message.getChatId());
+            } else {
+                setView(messageUtils.generateAnswerMessageWithText(update, UNSUPPORTED_MESSAGE_TYPE_TEXT));
+                continue;
+            }
+            if(isAckedFile(message)){
+                if(editInPlace){
+                    // the update can only be published once its ack has a message id
+                    produceAfterAck(message.getChatId(), ackMessageId -> updateProducer.produce(queue, update, ackMessageId));
+                    continue;
+                }
+                fileUpdates.add(update);
+            }
+            if(chainedChats.contains(message.getChatId())){
+                produceInChatOrder(message.getChatId(), null, () -> updateProducer.produce(queue, update));
+                continue;
+            }
+            batches.computeIfAbsent(queue, k -> new ArrayList<>()).add(update);
+        }
+
+        batches.forEach(updateProducer::produce);
+        if(!editInPlace){
+            fileUpdates.forEach(update -> setView(messageUtils.generateAnswerMessageWithText(update, FILE_RECEIVED_TEXT)));
+        }
+    }
+
+    private static boolean isAckedFile(Message message){
+        return (message.hasDocument() || message.hasPhoto()) && message.getMediaGroupId() == null;
+    }
+
+    private boolean isAccepted(Update update){
+        if(update == null){
+            log.error("Received update is null");
+            return false;
+        }
+
+        if(updateDeduplicator.isDuplicate(update.getUpdateId())){
+            log.debug("Skip redelivered update: " + update.getUpdateId());
+            return false;
+        }
+
+        if(!update.hasMessage()){
             log.error("Receive unsupported message type: " + update);
+            return false;
         }
+        return true;
     }
 
     private void distributeMessageByType(Update update) {
@@ -55,32 +228,94 @@ public class UpdateProcessor {
 
     private void setUnsupportedMessageTypeView(Update update) {
         var sendMessage = messageUtils.generateAnswerMessageWithText(update,
-                "Неподдерживаемый тип сообщения!");
-        setView(sendMessage);
+                UNSUPPORTED_MESSAGE_TYPE_TEXT);
+        setWebhookView(sendMessage);
     }
 
     private void setFileReceivedView(Update update) {
         var sendMessage = messageUtils.generateAnswerMessageWithText(update,
-                "Файл получен, обрабатывается...");
-        setView(sendMessage);
+                FILE_RECEIVED_TEXT);
+        setWebhookView(sendMessage);
     }
 
+    private void setWebhookView(SendMessage sendMessage) {
+        // with inline replies the webhook response has already carried this message
+        if(!inlineReplies){
+            setView(sendMessage);
+        }
+    }
 
-    public void setView(SendMessage sendMessage) {
-        telegramBot.sendAnswerMessage(sendMessage);
+    private void produceAfterAck(Long chatId, Consumer<Integer> producing) {
+        var ackMessageId = setView(messageUtils.generateAnswerMessageWithText(chatId, FILE_RECEIVED_TEXT))
+                .handle((ack, e) -> {
+                    if(e != null){
+                        log.error("Ack was not delivered, node will answer with a new message", e);
+                    }
+                    return ack != null ? ack.getMessageId() : null;
+                });
+        produceInChatOrder(chatId, ackMessageId, () -> producing.accept(ackMessageId.join()));
+    }
+
+    // publishes right away unless an earlier update of the chat still waits for its ack or ready is pending
+    private void produceInChatOrder(Long chatId, CompletableFuture<?> ready, Runnable producing) {
+        var pending = pendingPublishes.compute(chatId, (id, previous) -> {
+            var previousDone = previous == null || previous.isDone();
+            if(previousDone && (ready == null || ready.isDone())){
+                publishSafely(producing);
+                return null;
+            }
+            CompletableFuture<?> after = previousDone ? ready
+                    : ready == null ? previous : CompletableFuture.allOf(previous, ready);
+            return after.handle((result, e) -> null).thenRun(() -> publishSafely(producing));
+        });
+        if(pending != null){
+            pending.whenComplete((result, e) -> pendingPublishes.remove(chatId, pending));
+        }
+    }
+
+    private static void publishSafely(Runnable producing) {
+        try {
+            producing.run();
+        } catch (RuntimeException e) {
+            log.error("Failed to publish update", e);
+        }
+    }
+
+    public CompletableFuture<Message> setView(SendMessage sendMessage) {
+        return telegramBot.sendAnswerMessage(sendMessage);
+    }
+
+    public void setView(EditMessageText editMessageText) {
+        telegramBot.sendAnswerMessage(editMessageText);
     }
 
     private void processPhotoMessage(Update update) {
-        updateProducer.produce(rabbitConfiguration.getPhotoMessageUpdateQueue(), update);
-        setFileReceivedView(update);
+        var queue = rabbitConfiguration.photoMessageUpdateQueueOf(update.getMessage().getChatId());
+        processFileMessage(queue, update);
     }
 
     private void processDocumentMessage(Update update) {
-        updateProducer.produce(rabbitConfiguration.getDocMessageUpdateQueue(), update);
+        var queue = rabbitConfiguration.docMessageUpdateQueueOf(update.getMessage().getChatId());
+        processFileMessage(queue, update);
+    }
+
+    private void processFileMessage(String queue, Update update) {
+        if(!isAckedFile(update.getMessage())){
+            // album items get no ack, node answers the whole album once
+            produceInChatOrder(update.getMessage().getChatId(), null, () -> updateProducer.produce(queue, update));
+            return;
+        }
+        if(editInPlace){
+            produceAfterAck(update.getMessage().getChatId(), ackMessageId -> updateProducer.produce(queue, update, ackMessageId));
+            return;
+        }
+        updateProducer.produce(queue, update);
         setFileReceivedView(update);
     }
 
     private void processTextMessage(Update update) {
-        updateProducer.produce(rabbitConfiguration.getTextMessageUpdateQueue(), update);
+        var chatId = update.getMessage().getChatId();
+        var queue = rabbitConfiguration.textMessageUpdateQueueOf(chatId);
+        produceInChatOrder(chatId, null, () -> updateProducer.produce(queue, update));
     }
 }
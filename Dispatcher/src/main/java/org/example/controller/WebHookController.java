@@ -1,24 +1,90 @@
 package org.example.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j;
+import org.example.service.UpdateBuffer;
+import org.example.service.UpdateDeduplicator;
+import org.example.utils.RawUpdateParser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.io.IOException;
+
+@Log4j
 @RestController
 public class WebHookController {
 
+    private final UpdateBuffer updateBuffer;
     private final UpdateProcessor updateProcessor;
+    private final UpdateDeduplicator updateDeduplicator;
+    private final RawUpdateParser rawUpdateParser;
+    private final ObjectMapper objectMapper;
+    private final Counter inlineReplyCounter;
+
+    @Value("${ingestion.passthrough}")
+    private boolean passthrough;
 
-    public WebHookController(UpdateProcessor updateProcessor) {
+    public WebHookController(UpdateBuffer updateBuffer, UpdateProcessor updateProcessor, UpdateDeduplicator updateDeduplicator,
+                             RawUpdateParser rawUpdateParser, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.updateBuffer = updateBuffer;
         this.updateProcessor = updateProcessor;
+        this.updateDeduplicator = updateDeduplicator;
+        this.rawUpdateParser = rawUpdateParser;
+        this.objectMapper = objectMapper;
+        this.inlineReplyCounter = meterRegistry.counter("webhook.replies.inline");
     }
     // TODO: CONTROLLER ADVICE СДЕЛАТЬ
     @RequestMapping(value = "/callback/update", method = RequestMethod.POST)
-    public ResponseEntity<?> onUpdateReceived(@RequestBody Update update){
-        updateProcessor.processUpdate(update);
+    public ResponseEntity<?> onUpdateReceived(@RequestBody byte[] body){
+        boolean accepted;
+        SendMessage reply = null;
+        try {
+            // a redelivered update was answered the first time, the worker drops it again after the full check
+            if(passthrough){
+                var rawUpdate = rawUpdateParser.parse(body);
+                if(isRedelivery(rawUpdate.getUpdateId())){
+                    return ResponseEntity.ok().build();
+                }
+                accepted = updateBuffer.offer(rawUpdate);
+                if(accepted){
+                    reply = updateProcessor.inlineReplyOf(rawUpdate);
+                }
+            } else {
+                var update = objectMapper.readValue(body, Update.class);
+                if(isRedelivery(update.getUpdateId())){
+                    return ResponseEntity.ok().build();
+                }
+                accepted = updateBuffer.offer(update);
+                if(accepted){
+                    reply = updateProcessor.inlineReplyOf(update);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Received malformed update", e);
+            return ResponseEntity.badRequest().build();
+        }
+
+        if(!accepted){
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+
+        if(reply != null){
+            inlineReplyCounter.increment();
+            return ResponseEntity.ok(reply);
+        }
         return ResponseEntity.ok().build();
     }
+
+    private boolean isRedelivery(Integer updateId){
+        return updateId != null && updateDeduplicator.isSeen(updateId);
+    }
 }
@@ -0,0 +1,19 @@
+package org.example.dto;
+
+import lombok.*;
+import org.example.service.enums.MessageType;
+
+@Getter
+@Builder
+@AllArgsConstructor
+public class RawUpdate {
+    private final Integer updateId;
+    private final Long chatId;
+    private final MessageType messageType;
+    private final String mediaGroupId;
+    private final byte[] body;
+
+    public boolean hasMessage() {
+        return messageType != null;
+    }
+}
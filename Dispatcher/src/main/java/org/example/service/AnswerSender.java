@@ -0,0 +1,12 @@
+package org.example.service;
+
+import org.example.controller.TelegramBot;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+
+public interface AnswerSender {
+    void registerBot(TelegramBot telegramBot);
+    <T extends Serializable> CompletableFuture<T> send(String chatId, BotApiMethod<T> method);
+}
@@ -0,0 +1,9 @@
+package org.example.service;
+
+import org.example.dto.RawUpdate;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+public interface UpdateBuffer {
+    boolean offer(Update update);
+    boolean offer(RawUpdate rawUpdate);
+}
@@ -0,0 +1,6 @@
+package org.example.service;
+
+public interface UpdateDeduplicator {
+    boolean isDuplicate(long updateId);
+    boolean isSeen(long updateId);
+}
@@ -0,0 +1,7 @@
+package org.example.service;
+
+import org.example.controller.TelegramBot;
+
+public interface UpdatePoller {
+    void start(TelegramBot telegramBot);
+}
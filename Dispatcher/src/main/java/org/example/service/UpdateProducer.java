@@ -2,6 +2,12 @@ package org.example.service;
 
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.util.List;
+
 public interface UpdateProducer {
     void produce(String rabbitQueue, Update update);
+    void produce(String rabbitQueue, Update update, Integer ackMessageId);
+    void produce(String rabbitQueue, List<Update> updates);
+    void produce(String rabbitQueue, byte[] rawUpdate);
+    void produce(String rabbitQueue, byte[] rawUpdate, Integer ackMessageId);
 }
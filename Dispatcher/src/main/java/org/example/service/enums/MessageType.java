@@ -0,0 +1,8 @@
+package org.example.service.enums;
+
+public enum MessageType {
+    TEXT,
+    DOCUMENT,
+    PHOTO,
+    UNSUPPORTED
+}
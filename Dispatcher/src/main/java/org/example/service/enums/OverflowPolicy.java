@@ -0,0 +1,6 @@
+package org.example.service.enums;
+
+public enum OverflowPolicy {
+    REJECT,
+    BLOCK
+}
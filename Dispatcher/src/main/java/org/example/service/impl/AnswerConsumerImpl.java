@@ -1,23 +1,165 @@
 package org.example.service.impl;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.example.controller.UpdateProcessor;
 import org.example.service.AnswerConsumer;
+import org.springframework.amqp.rabbit.annotation.RabbitHandler;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 
 @Service
+@RabbitListener(queues = "${spring.rabbitmq.queues.answer-message}")
 public class AnswerConsumerImpl implements AnswerConsumer {
+    private static final int MAX_MESSAGE_LENGTH = 4096;
+    private static final String SEPARATOR = "\n\n";
+
     private final UpdateProcessor updateProcessor;
+    private final Map<String, ChatAnswers> buffers = new ConcurrentHashMap<>();
+    private final Counter coalescedCounter;
+
+    @Value("${answers.coalesce.enabled}")
+    private boolean coalesce;
+
+    @Value("${answers.coalesce.window-ms}")
+    private long windowMs;
 
-    public AnswerConsumerImpl(UpdateProcessor updateProcessor) {
+    @Value("${answers.coalesce.max-messages}")
+    private int maxMessages;
+
+    private ScheduledExecutorService scheduler;
+
+    public AnswerConsumerImpl(UpdateProcessor updateProcessor, MeterRegistry meterRegistry) {
         this.updateProcessor = updateProcessor;
+        this.coalescedCounter = meterRegistry.counter("answers.coalesced");
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("answers-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        buffers.keySet().forEach(this::flush);
     }
 
     @Override
-    @RabbitListener(queues = "${spring.rabbitmq.queues.answer-message}")
+    @RabbitHandler
     public void consume(SendMessage sendMessage) {
-        updateProcessor.setView(sendMessage);
+        if (!coalesce || !isCoalescable(sendMessage)) {
+            flush(sendMessage.getChatId());
+            updateProcessor.setView(sendMessage);
+            return;
+        }
+
+        var chatId = sendMessage.getChatId();
+        var text = sendMessage.getText();
+        var state = new boolean[2];
+        buffers.compute(chatId, (key, answers) -> {
+            if (answers == null) {
+                answers = new ChatAnswers();
+                state[0] = true;
+            }
+            answers.add(text);
+            state[1] = answers.texts.size() >= maxMessages || answers.length >= MAX_MESSAGE_LENGTH;
+            return answers;
+        });
+
+        if (state[1]) {
+            flush(chatId);
+        } else if (state[0]) {
+            scheduler.schedule(() -> flush(chatId), windowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    @RabbitHandler
+    public void consume(EditMessageText editMessageText) {
+        flush(editMessageText.getChatId());
+        updateProcessor.setView(editMessageText);
+    }
+
+    private boolean isCoalescable(SendMessage sendMessage) {
+        return sendMessage.getText() != null
+                && sendMessage.getReplyMarkup() == null
+                && sendMessage.getParseMode() == null
+                && sendMessage.getReplyToMessageId() == null;
+    }
+
+    private void flush(String chatId) {
+        var answers = buffers.remove(chatId);
+        if (answers == null) {
+            return;
+        }
+
+        var chunks = merge(answers.texts);
+        coalescedCounter.increment(Math.max(0, answers.texts.size() - chunks.size()));
+        for (var chunk : chunks) {
+            var sendMessage = new SendMessage();
+            sendMessage.setChatId(chatId);
+            sendMessage.setText(chunk);
+            updateProcessor.setView(sendMessage);
+        }
+    }
+
+    private static List<String> merge(List<String> texts) {
+        var chunks = new ArrayList<String>();
+        var chunk = new StringBuilder();
+        for (var text : texts) {
+            if (chunk.length() > 0 && chunk.length() + SEPARATOR.length() + text.length() > MAX_MESSAGE_LENGTH) {
+                chunks.add(chunk.toString());
+                chunk.setLength(0);
+            }
+            if (chunk.length() > 0) {
+                chunk.append(SEPARATOR);
+            }
+            chunk.append(text);
+
+            while (chunk.length() > MAX_MESSAGE_LENGTH) {
+                var end = splitIndexOf(chunk);
+                chunks.add(chunk.substring(0, end));
+                chunk.delete(0, end);
+            }
+        }
+        if (chunk.length() > 0) {
+            chunks.add(chunk.toString());
+        }
+        return chunks;
+    }
+
+    // cuts after the last line break that fits, otherwise at the limit without splitting a surrogate pair
+    private static int splitIndexOf(StringBuilder chunk) {
+        var lineBreak = chunk.lastIndexOf("\n", MAX_MESSAGE_LENGTH - 1);
+        if (lineBreak > 0) {
+            return lineBreak + 1;
+        }
+        return Character.isHighSurrogate(chunk.charAt(MAX_MESSAGE_LENGTH - 1)) ? MAX_MESSAGE_LENGTH - 1 : MAX_MESSAGE_LENGTH;
+    }
+
+    private static class ChatAnswers {
+        private final List<String> texts = new ArrayList<>();
+        private int length;
+
+        private void add(String text) {
+            length += (texts.isEmpty() ? 0 : SEPARATOR.length()) + text.length();
+            texts.add(text);
+        }
     }
 }
@@ -0,0 +1,266 @@
+package org.example.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j;
+import org.example.controller.TelegramBot;
+import org.example.service.AnswerSender;
+import org.example.utils.TokenBucket;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Log4j
+public class AnswerSenderImpl implements AnswerSender {
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    @Value("${sender.global.rate}")
+    private double globalRate;
+
+    @Value("${sender.global.burst}")
+    private double globalBurst;
+
+    @Value("${sender.chat.rate}")
+    private double chatRate;
+
+    @Value("${sender.chat.burst}")
+    private double chatBurst;
+
+    @Value("${sender.max-attempts}")
+    private int maxAttempts;
+
+    private final Map<String, ChatMailbox> mailboxes = new ConcurrentHashMap<>();
+    private final DelayQueue<ChatMailbox> readyChats = new DelayQueue<>();
+
+    private final Timer sendLatencyTimer;
+    private final Timer throttleWaitTimer;
+    private final Counter throttledCounter;
+
+    private TelegramBot telegramBot;
+    private TokenBucket globalBucket;
+    private Thread dispatcherThread;
+    private ScheduledExecutorService sweeper;
+
+    public AnswerSenderImpl(MeterRegistry meterRegistry) {
+        this.sendLatencyTimer = meterRegistry.timer("sender.send.latency");
+        this.throttleWaitTimer = meterRegistry.timer("sender.throttle.wait");
+        this.throttledCounter = meterRegistry.counter("sender.throttled");
+        Gauge.builder("sender.chats.active", mailboxes, Map::size)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        globalBucket = new TokenBucket(globalBurst, globalRate);
+
+        dispatcherThread = new CustomizableThreadFactory("sender-").newThread(this::dispatch);
+        dispatcherThread.start();
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("sender-sweeper-"));
+        sweeper.scheduleWithFixedDelay(this::retireIdleMailboxes, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdownNow();
+        dispatcherThread.interrupt();
+    }
+
+    @Override
+    public void registerBot(TelegramBot telegramBot) {
+        this.telegramBot = telegramBot;
+    }
+
+    @Override
+    public <T extends Serializable> CompletableFuture<T> send(String chatId, BotApiMethod<T> method) {
+        var pending = new PendingMethod<>(chatId, method);
+        enqueue(pending, 0);
+        return pending.result;
+    }
+
+    private void enqueue(PendingMethod<?> pending, long pauseNanos) {
+        while (true) {
+            var mailbox = mailboxes.computeIfAbsent(pending.chatId,
+                    chatId -> new ChatMailbox(chatId, new TokenBucket(chatBurst, chatRate)));
+            synchronized (mailbox) {
+                if (mailbox.retired) {
+                    continue;
+                }
+
+                if (pauseNanos > 0) {
+                    mailbox.queue.addFirst(pending);
+                    mailbox.bucket.pause(pauseNanos);
+                    if (mailbox.scheduled && readyChats.remove(mailbox)) {
+                        schedule(mailbox);
+                    }
+                } else {
+                    mailbox.queue.addLast(pending);
+                }
+
+                if (!mailbox.scheduled) {
+                    mailbox.scheduled = true;
+                    schedule(mailbox);
+                }
+                return;
+            }
+        }
+    }
+
+    private void schedule(ChatMailbox mailbox) {
+        mailbox.readyAt = System.nanoTime() + mailbox.bucket.nanosUntilAvailable();
+        readyChats.put(mailbox);
+    }
+
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                var mailbox = readyChats.take();
+
+                PendingMethod<?> pending;
+                synchronized (mailbox) {
+                    if (mailbox.bucket.tryAcquire() > 0) {
+                        schedule(mailbox);
+                        continue;
+                    }
+                    pending = mailbox.queue.pollFirst();
+                    if (mailbox.queue.isEmpty()) {
+                        mailbox.scheduled = false;
+                    } else {
+                        schedule(mailbox);
+                    }
+                }
+                if (pending == null) {
+                    continue;
+                }
+
+                long wait;
+                while ((wait = globalBucket.tryAcquire()) > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+
+                throttleWaitTimer.record(System.nanoTime() - pending.enqueuedAt, TimeUnit.NANOSECONDS);
+                execute(pending);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Outbound dispatcher failed", e);
+            }
+        }
+    }
+
+    private <T extends Serializable> void execute(PendingMethod<T> pending) {
+        pending.attempt++;
+        var startedAt = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = telegramBot.executeAsync(pending.method);
+        } catch (TelegramApiException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        future.whenComplete((result, e) -> {
+            sendLatencyTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            if (e == null) {
+                pending.result.complete(result);
+                return;
+            }
+
+            var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            var retryAfter = retryAfterSeconds(cause);
+            if (retryAfter != null && pending.attempt < maxAttempts) {
+                throttledCounter.increment();
+                log.debug("Chat " + pending.chatId + " is throttled for " + retryAfter + "s");
+                pending.enqueuedAt = System.nanoTime();
+                enqueue(pending, TimeUnit.SECONDS.toNanos(retryAfter));
+                return;
+            }
+
+            log.error(cause);
+            pending.result.completeExceptionally(cause);
+        });
+    }
+
+    private static Integer retryAfterSeconds(Throwable e) {
+        if (!(e instanceof TelegramApiRequestException)) {
+            return null;
+        }
+        var requestException = (TelegramApiRequestException) e;
+        if (requestException.getErrorCode() == null || requestException.getErrorCode() != TOO_MANY_REQUESTS) {
+            return null;
+        }
+        var parameters = requestException.getParameters();
+        if (parameters == null || parameters.getRetryAfter() == null) {
+            return 1;
+        }
+        return parameters.getRetryAfter();
+    }
+
+    private void retireIdleMailboxes() {
+        for (var mailbox : mailboxes.values()) {
+            synchronized (mailbox) {
+                if (!mailbox.scheduled && mailbox.queue.isEmpty() && mailbox.bucket.isFull()) {
+                    mailbox.retired = true;
+                    mailboxes.remove(mailbox.chatId, mailbox);
+                }
+            }
+        }
+    }
+
+    private static class PendingMethod<T extends Serializable> {
+        private final String chatId;
+        private final BotApiMethod<T> method;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private volatile long enqueuedAt = System.nanoTime();
+        private volatile int attempt;
+
+        private PendingMethod(String chatId, BotApiMethod<T> method) {
+            this.chatId = chatId;
+            this.method = method;
+        }
+    }
+
+    private static class ChatMailbox implements Delayed {
+        private final String chatId;
+        private final TokenBucket bucket;
+        private final Deque<PendingMethod<?>> queue = new ArrayDeque<>();
+        private volatile long readyAt;
+        private boolean scheduled;
+        private boolean retired;
+
+        private ChatMailbox(String chatId, TokenBucket bucket) {
+            this.chatId = chatId;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(readyAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
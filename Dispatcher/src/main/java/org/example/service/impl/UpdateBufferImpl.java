@@ -0,0 +1,172 @@
+package org.example.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j;
+import org.example.controller.UpdateProcessor;
+import org.example.dto.RawUpdate;
+import org.example.service.UpdateBuffer;
+import org.example.service.enums.OverflowPolicy;
+import org.example.utils.QueuePartitions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Log4j
+public class UpdateBufferImpl implements UpdateBuffer {
+    private final UpdateProcessor updateProcessor;
+
+    @Value("${ingestion.async}")
+    private boolean async;
+
+    @Value("${ingestion.overflow-policy}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${ingestion.block-timeout-ms}")
+    private long blockTimeoutMs;
+
+    // one queue per worker, chosen by chat, so a chat's updates are processed in arrival order
+    private final List<BlockingQueue<QueuedUpdate>> stripes;
+    private final Timer queuedTimer;
+    private final Counter rejectedCounter;
+
+    private ExecutorService workerPool;
+    private volatile boolean running;
+
+    public UpdateBufferImpl(UpdateProcessor updateProcessor, MeterRegistry meterRegistry,
+                            @Value("${ingestion.queue-capacity}") int queueCapacity,
+                            @Value("${ingestion.workers}") int workers) {
+        this.updateProcessor = updateProcessor;
+        this.stripes = new ArrayList<>(workers);
+        var stripeCapacity = Math.max(1, (queueCapacity + workers - 1) / workers);
+        for (int i = 0; i < workers; i++) {
+            stripes.add(new ArrayBlockingQueue<>(stripeCapacity));
+        }
+        this.queuedTimer = meterRegistry.timer("ingestion.queue.wait");
+        this.rejectedCounter = meterRegistry.counter("ingestion.queue.rejected");
+        Gauge.builder("ingestion.queue.depth", stripes, UpdateBufferImpl::depthOf)
+                .register(meterRegistry);
+    }
+
+    private static int depthOf(List<BlockingQueue<QueuedUpdate>> stripes) {
+        var depth = 0;
+        for (var stripe : stripes) {
+            depth += stripe.size();
+        }
+        return depth;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!async) {
+            return;
+        }
+
+        running = true;
+        workerPool = Executors.newFixedThreadPool(stripes.size(), new CustomizableThreadFactory("ingestion-"));
+        for (var stripe : stripes) {
+            workerPool.execute(() -> drain(stripe));
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (workerPool == null) {
+            return;
+        }
+
+        running = false;
+        workerPool.shutdown();
+        if (!workerPool.awaitTermination(blockTimeoutMs + 5000, TimeUnit.MILLISECONDS)) {
+            log.error("Ingestion workers did not stop in time, dropped updates: " + depthOf(stripes));
+            workerPool.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean offer(Update update) {
+        var updateId = update != null ? update.getUpdateId() : null;
+        var chatId = update != null && update.hasMessage() ? update.getMessage().getChatId() : null;
+        return offer(updateId, chatId, () -> updateProcessor.processUpdate(update));
+    }
+
+    @Override
+    public boolean offer(RawUpdate rawUpdate) {
+        return offer(rawUpdate.getUpdateId(), rawUpdate.getChatId(), () -> updateProcessor.processRawUpdate(rawUpdate));
+    }
+
+    private boolean offer(Integer updateId, Long chatId, Runnable processing) {
+        if (!async) {
+            processing.run();
+            return true;
+        }
+
+        var queue = stripes.get(QueuePartitions.partitionOf(chatId != null ? chatId : 0L, stripes.size()));
+        var queuedUpdate = new QueuedUpdate(updateId, processing, System.nanoTime());
+        boolean accepted;
+        if (OverflowPolicy.BLOCK.equals(overflowPolicy)) {
+            try {
+                accepted = queue.offer(queuedUpdate, blockTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+        } else {
+            accepted = queue.offer(queuedUpdate);
+        }
+
+        if (!accepted) {
+            rejectedCounter.increment();
+            log.error("Ingestion queue is full, update rejected: " + updateId);
+        }
+        return accepted;
+    }
+
+    private void drain(BlockingQueue<QueuedUpdate> queue) {
+        while (running || !queue.isEmpty()) {
+            QueuedUpdate queuedUpdate;
+            try {
+                queuedUpdate = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (queuedUpdate == null) {
+                continue;
+            }
+
+            queuedTimer.record(System.nanoTime() - queuedUpdate.enqueuedAt, TimeUnit.NANOSECONDS);
+            try {
+                queuedUpdate.processing.run();
+            } catch (RuntimeException e) {
+                log.error("Failed to process update " + queuedUpdate.updateId, e);
+            }
+        }
+    }
+
+    private static class QueuedUpdate {
+        private final Integer updateId;
+        private final Runnable processing;
+        private final long enqueuedAt;
+
+        private QueuedUpdate(Integer updateId, Runnable processing, long enqueuedAt) {
+            this.updateId = updateId;
+            this.processing = processing;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j;
+import org.example.service.UpdateDeduplicator;
+import org.example.utils.LongHashSet;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+@Service
+@Log4j
+public class UpdateDeduplicatorImpl implements UpdateDeduplicator {
+    private static final String SHARED_KEY_PREFIX = "dedup:update:";
+
+    private final LongHashSet[] generations;
+    private final long generationNanos;
+    private final Duration retention;
+    private final StringRedisTemplate redisTemplate;
+    private final Counter duplicateCounter;
+
+    @Value("${dedup.enabled}")
+    private boolean enabled;
+
+    private int current;
+    private long currentStartedAt;
+
+    public UpdateDeduplicatorImpl(@Value("${dedup.retention}") Duration retention,
+                                  @Value("${dedup.generations}") int generationCount,
+                                  @Value("${dedup.expected-updates}") int expectedUpdates,
+                                  @Value("${dedup.shared}") boolean shared,
+                                  ObjectProvider<StringRedisTemplate> redisTemplate,
+                                  MeterRegistry meterRegistry) {
+        this.retention = retention;
+        this.generationNanos = retention.toNanos() / generationCount;
+        this.generations = new LongHashSet[generationCount];
+        for (int i = 0; i < generationCount; i++) {
+            generations[i] = new LongHashSet(expectedUpdates / generationCount);
+        }
+        this.currentStartedAt = System.nanoTime();
+        this.redisTemplate = shared ? redisTemplate.getIfAvailable() : null;
+        this.duplicateCounter = meterRegistry.counter("dedup.duplicates");
+    }
+
+    @Override
+    public boolean isDuplicate(long updateId) {
+        if (!enabled) {
+            return false;
+        }
+
+        if (!markSeenLocally(updateId) || !markSeenShared(updateId)) {
+            duplicateCounter.increment();
+            return true;
+        }
+        return false;
+    }
+
+    // unlike isDuplicate this does not mark the update, it is only a hint for the webhook reply
+    @Override
+    public boolean isSeen(long updateId) {
+        if (!enabled) {
+            return false;
+        }
+        return isSeenLocally(updateId) || isSeenShared(updateId);
+    }
+
+    private synchronized boolean isSeenLocally(long updateId) {
+        rotate();
+        for (var generation : generations) {
+            if (generation.contains(updateId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSeenShared(long updateId) {
+        if (redisTemplate == null) {
+            return false;
+        }
+
+        try {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(SHARED_KEY_PREFIX + updateId));
+        } catch (RuntimeException e) {
+            log.error("Shared dedup store is unavailable, relying on local window", e);
+            return false;
+        }
+    }
+
+    private synchronized boolean markSeenLocally(long updateId) {
+        rotate();
+        for (var generation : generations) {
+            if (generation.contains(updateId)) {
+                return false;
+            }
+        }
+        return generations[current].add(updateId);
+    }
+
+    private void rotate() {
+        var elapsed = System.nanoTime() - currentStartedAt;
+        if (elapsed < generationNanos) {
+            return;
+        }
+
+        var expired = Math.min(elapsed / generationNanos, generations.length);
+        for (int i = 0; i < expired; i++) {
+            current = (current + 1) % generations.length;
+            generations[current].clear();
+        }
+        currentStartedAt += (elapsed / generationNanos) * generationNanos;
+    }
+
+    private boolean markSeenShared(long updateId) {
+        if (redisTemplate == null) {
+            return true;
+        }
+
+        try {
+            var firstSeen = redisTemplate.opsForValue()
+                    .setIfAbsent(SHARED_KEY_PREFIX + updateId, "", retention);
+            return !Boolean.FALSE.equals(firstSeen);
+        } catch (RuntimeException e) {
+            log.error("Shared dedup store is unavailable, relying on local window", e);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.example.service.impl;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j;
+import org.example.controller.TelegramBot;
+import org.example.controller.UpdateProcessor;
+import org.example.service.UpdatePoller;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Log4j
+public class UpdatePollerImpl implements UpdatePoller {
+    private final UpdateProcessor updateProcessor;
+    private final DistributionSummary batchSizeSummary;
+    private final Timer routingTimer;
+
+    @Value("${polling.limit}")
+    private int limit;
+
+    @Value("${polling.timeout-seconds}")
+    private int timeoutSeconds;
+
+    @Value("${polling.error-backoff-ms}")
+    private long errorBackoffMs;
+
+    private ExecutorService pollingThread;
+    private ExecutorService routingThread;
+    private volatile boolean running;
+
+    public UpdatePollerImpl(UpdateProcessor updateProcessor, MeterRegistry meterRegistry) {
+        this.updateProcessor = updateProcessor;
+        this.batchSizeSummary = meterRegistry.summary("polling.batch.size");
+        this.routingTimer = meterRegistry.timer("polling.batch.routing");
+    }
+
+    @Override
+    public void start(TelegramBot telegramBot) {
+        running = true;
+        pollingThread = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("polling-"));
+        routingThread = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("polling-routing-"));
+        pollingThread.execute(() -> poll(telegramBot));
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (pollingThread == null) {
+            return;
+        }
+
+        running = false;
+        pollingThread.shutdownNow();
+        routingThread.shutdown();
+        routingThread.awaitTermination(timeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    private void poll(TelegramBot telegramBot) {
+        int offset = 0;
+        Future<?> routing = CompletableFuture.completedFuture(null);
+
+        while (running) {
+            List<Update> updates;
+            try {
+                updates = telegramBot.execute(GetUpdates.builder()
+                        .offset(offset)
+                        .limit(limit)
+                        .timeout(timeoutSeconds)
+                        .build());
+            } catch (TelegramApiException e) {
+                log.error("Failed to poll updates", e);
+                if (!sleep(errorBackoffMs)) {
+                    return;
+                }
+                continue;
+            }
+
+            if (updates == null || updates.isEmpty()) {
+                continue;
+            }
+            offset = updates.get(updates.size() - 1).getUpdateId() + 1;
+            batchSizeSummary.record(updates.size());
+
+            // the batch is routed while the next one is polled, so at most one batch waits here
+            if (!awaitRouting(routing)) {
+                return;
+            }
+            routing = routingThread.submit(() -> routingTimer.record(() -> updateProcessor.processUpdates(updates)));
+        }
+    }
+
+    private boolean awaitRouting(Future<?> routing) {
+        try {
+            routing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            log.error("Failed to route polled updates", e.getCause());
+        }
+        return true;
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -1,24 +1,287 @@
 package org.example.service.impl;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.log4j.Log4j;
 import org.example.service.UpdateProducer;
+import org.example.utils.UpdateHeaders;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 @Service
 @Log4j
 public class UpdateProducerImpl implements UpdateProducer {
 
     private final RabbitTemplate rabbitTemplate;
+    private final Counter lostCounter;
+
+    @Value("${publisher.threads}")
+    private int threads;
+
+    @Value("${publisher.batch.enabled}")
+    private boolean batchEnabled;
+
+    @Value("${publisher.batch.size}")
+    private int batchSize;
+
+    @Value("${publisher.batch.linger-ms}")
+    private long lingerMs;
+
+    @Value("${publisher.confirm.timeout-ms}")
+    private long confirmTimeoutMs;
 
-    public UpdateProducerImpl(RabbitTemplate rabbitTemplate) {
+    @Value("${publisher.confirm.max-attempts}")
+    private int maxAttempts;
+
+    @Value("${publisher.confirm.retry-backoff-ms}")
+    private long retryBackoffMs;
+
+    private final Map<String, QueueLane> lanes = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private ExecutorService publishers;
+
+    public UpdateProducerImpl(RabbitTemplate rabbitTemplate, MeterRegistry meterRegistry) {
         this.rabbitTemplate = rabbitTemplate;
+        this.lostCounter = meterRegistry.counter("publisher.lost");
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("publisher-linger-"));
+        publishers = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("publisher-"));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdownNow();
+        for (var lane : lanes.values()) {
+            synchronized (lane) {
+                if (!lane.draining && !lane.pending.isEmpty()) {
+                    startDrain(lane);
+                }
+            }
+        }
+        publishers.shutdown();
+        if (!publishers.awaitTermination(confirmTimeoutMs + retryBackoffMs * maxAttempts, TimeUnit.MILLISECONDS)) {
+            publishers.shutdownNow();
+            publishers.awaitTermination(confirmTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+        for (var lane : lanes.values()) {
+            synchronized (lane) {
+                dropPending(lane);
+            }
+        }
     }
 
     @Override
     public void produce(String rabbitQueue, Update update) {
+        produce(rabbitQueue, update, null);
+    }
+
+    @Override
+    public void produce(String rabbitQueue, Update update, Integer ackMessageId) {
         log.debug(update.getMessage().getText());
-        rabbitTemplate.convertAndSend(rabbitQueue, update);
+        var properties = new MessageProperties();
+        setAckMessageId(properties, ackMessageId);
+        var message = rabbitTemplate.getMessageConverter().toMessage(update, properties);
+        enqueue(rabbitQueue, List.of(message), false);
+    }
+
+    @Override
+    public void produce(String rabbitQueue, List<Update> updates) {
+        var messages = new ArrayList<Message>(updates.size());
+        for (var update : updates) {
+            messages.add(rabbitTemplate.getMessageConverter().toMessage(update, new MessageProperties()));
+        }
+        enqueue(rabbitQueue, messages, true);
+    }
+
+    @Override
+    public void produce(String rabbitQueue, byte[] rawUpdate) {
+        produce(rabbitQueue, rawUpdate, null);
+    }
+
+    @Override
+    public void produce(String rabbitQueue, byte[] rawUpdate, Integer ackMessageId) {
+        var properties = new MessageProperties();
+        setAckMessageId(properties, ackMessageId);
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setContentEncoding(StandardCharsets.UTF_8.name());
+        properties.setContentLength(rawUpdate.length);
+        properties.setHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME, Update.class.getName());
+        enqueue(rabbitQueue, List.of(new Message(rawUpdate, properties)), false);
+    }
+
+    private static void setAckMessageId(MessageProperties properties, Integer ackMessageId) {
+        if (ackMessageId != null) {
+            properties.setHeader(UpdateHeaders.ACK_MESSAGE_ID, ackMessageId);
+        }
+    }
+
+    private void enqueue(String queue, List<Message> messages, boolean immediately) {
+        var lane = lanes.computeIfAbsent(queue, QueueLane::new);
+        synchronized (lane) {
+            lane.pending.addAll(messages);
+            if (lane.draining) {
+                return;
+            }
+            if (immediately || !batchEnabled || lane.pending.size() >= batchSize) {
+                startDrain(lane);
+            } else if (!lane.lingering) {
+                lane.lingering = true;
+                scheduler.schedule(() -> lingerExpired(lane), lingerMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void lingerExpired(QueueLane lane) {
+        synchronized (lane) {
+            if (lane.lingering && !lane.draining) {
+                startDrain(lane);
+            }
+        }
+    }
+
+    // callers hold the lane monitor; a lane has at most one drain running, so its batches go out one after another
+    private void startDrain(QueueLane lane) {
+        lane.lingering = false;
+        lane.draining = true;
+        publishers.execute(() -> drain(lane));
+    }
+
+    // unconfirmed messages go back to the head of the lane, so nothing later in the queue overtakes them;
+    // order is kept only between publish attempts: a message nacked in the middle of a batch is resent
+    // after the later messages of that batch have already landed
+    private void drain(QueueLane lane) {
+        var attempt = 0;
+        while (true) {
+            var batch = new ArrayList<Message>(batchSize);
+            synchronized (lane) {
+                if (lane.pending.isEmpty()) {
+                    lane.draining = false;
+                    return;
+                }
+                while (batch.size() < batchSize && !lane.pending.isEmpty()) {
+                    batch.add(lane.pending.poll());
+                }
+            }
+
+            var unconfirmed = publish(lane.queue, batch);
+            if (unconfirmed.isEmpty()) {
+                attempt = 0;
+                continue;
+            }
+
+            attempt++;
+            synchronized (lane) {
+                for (var i = unconfirmed.size() - 1; i >= 0; i--) {
+                    lane.pending.addFirst(unconfirmed.get(i));
+                }
+            }
+            if (attempt % maxAttempts == 0) {
+                log.error(unconfirmed.size() + " messages to " + lane.queue + " are still unconfirmed after "
+                        + attempt + " attempts, the queue is held until they are");
+            } else {
+                log.debug("Retrying " + unconfirmed.size() + " unconfirmed messages to " + lane.queue);
+            }
+            try {
+                Thread.sleep(retryBackoffMs * Math.min(attempt, maxAttempts));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                synchronized (lane) {
+                    dropPending(lane);
+                    lane.draining = false;
+                }
+                return;
+            }
+        }
+    }
+
+    // callers hold the lane monitor
+    private void dropPending(QueueLane lane) {
+        if (lane.pending.isEmpty()) {
+            return;
+        }
+        log.error(lane.pending.size() + " messages to " + lane.queue + " are lost on shutdown");
+        lostCounter.increment(lane.pending.size());
+        lane.pending.clear();
+    }
+
+    private List<Message> publish(String queue, List<Message> batch) {
+        var correlations = new ArrayList<CorrelationData>(batch.size());
+        try {
+            rabbitTemplate.invoke(operations -> {
+                for (var message : batch) {
+                    var correlationData = new CorrelationData(UUID.randomUUID().toString());
+                    operations.send(rabbitTemplate.getExchange(), queue, message, correlationData);
+                    correlations.add(correlationData);
+                }
+                return null;
+            });
+        } catch (AmqpException e) {
+            log.error("Failed to publish " + (batch.size() - correlations.size()) + " of " + batch.size()
+                    + " messages to " + queue, e);
+        }
+
+        var unconfirmed = new ArrayList<Message>();
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+        for (var i = 0; i < batch.size(); i++) {
+            if (i >= correlations.size() || !isConfirmed(correlations.get(i), deadline)) {
+                unconfirmed.add(batch.get(i));
+            }
+        }
+        return unconfirmed;
+    }
+
+    private static boolean isConfirmed(CorrelationData correlationData, long deadline) {
+        try {
+            var confirm = correlationData.getFuture().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            if (!confirm.isAck()) {
+                log.debug("Message " + correlationData.getId() + " is nacked: " + confirm.getReason());
+            }
+            return confirm.isAck();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            log.debug("Message " + correlationData.getId() + " is not confirmed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static class QueueLane {
+        private final String queue;
+        private final Deque<Message> pending = new ArrayDeque<>();
+        private boolean draining;
+        private boolean lingering;
+
+        private QueueLane(String queue) {
+            this.queue = queue;
+        }
     }
 }
@@ -9,8 +9,12 @@ public class MessageUtils {
 
     public static SendMessage generateAnswerMessageWithText(Update update, String text){
         var message = update.getMessage();
+        return generateAnswerMessageWithText(message.getChatId(), text);
+    }
+
+    public static SendMessage generateAnswerMessageWithText(Long chatId, String text){
         var sendMessage = new SendMessage();
-        sendMessage.setChatId(message.getChatId().toString());
+        sendMessage.setChatId(chatId.toString());
         sendMessage.setText(text);
         return sendMessage;
     }
@@ -0,0 +1,95 @@
+package org.example.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.example.dto.RawUpdate;
+import org.example.service.enums.MessageType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+@Component
+public class RawUpdateParser {
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public RawUpdate parse(byte[] body) throws IOException {
+        var builder = RawUpdate.builder().body(body);
+
+        try (var parser = jsonFactory.createParser(body)) {
+            expect(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var field = parser.getCurrentName();
+                parser.nextToken();
+                if ("update_id".equals(field)) {
+                    builder.updateId(parser.getIntValue());
+                } else if ("message".equals(field)) {
+                    parseMessage(parser, builder);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private void parseMessage(JsonParser parser, RawUpdate.RawUpdateBuilder builder) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+
+        boolean hasText = false;
+        boolean hasDocument = false;
+        boolean hasPhoto = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.getCurrentName();
+            var token = parser.nextToken();
+            if ("chat".equals(field)) {
+                builder.chatId(parseChatId(parser));
+            } else if ("media_group_id".equals(field) && token == JsonToken.VALUE_STRING) {
+                builder.mediaGroupId(parser.getText());
+            } else {
+                hasText |= "text".equals(field) && token != JsonToken.VALUE_NULL;
+                hasDocument |= "document".equals(field) && token != JsonToken.VALUE_NULL;
+                hasPhoto |= "photo".equals(field) && token != JsonToken.VALUE_NULL;
+                parser.skipChildren();
+            }
+        }
+
+        if (hasText) {
+            builder.messageType(MessageType.TEXT);
+        } else if (hasDocument) {
+            builder.messageType(MessageType.DOCUMENT);
+        } else if (hasPhoto) {
+            builder.messageType(MessageType.PHOTO);
+        } else {
+            builder.messageType(MessageType.UNSUPPORTED);
+        }
+    }
+
+    private Long parseChatId(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+
+        Long chatId = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.getCurrentName();
+            parser.nextToken();
+            if ("id".equals(field)) {
+                chatId = parser.getLongValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return chatId;
+    }
+
+    private void expect(JsonParser parser, JsonToken expected) throws IOException {
+        if (parser.nextToken() != expected) {
+            throw new IOException("Unexpected update json, expected " + expected + " at " + parser.getCurrentLocation());
+        }
+    }
+}
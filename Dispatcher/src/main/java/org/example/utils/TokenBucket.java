@@ -0,0 +1,58 @@
+package org.example.utils;
+
+public class TokenBucket {
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double capacity, double tokensPerSecond) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public synchronized long tryAcquire() {
+        var wait = nanosUntilAvailable();
+        if (wait == 0) {
+            tokens -= 1;
+        }
+        return wait;
+    }
+
+    public synchronized long nanosUntilAvailable() {
+        var now = System.nanoTime();
+        if (now - lastRefill < 0) {
+            return lastRefill - now;
+        }
+        refill(now);
+        if (tokens >= 1) {
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    public synchronized void pause(long nanos) {
+        var resumeAt = System.nanoTime() + nanos;
+        if (resumeAt - lastRefill > 0) {
+            tokens = 0;
+            lastRefill = resumeAt;
+        }
+    }
+
+    public synchronized boolean isFull() {
+        var now = System.nanoTime();
+        if (now - lastRefill < 0) {
+            return false;
+        }
+        refill(now);
+        return tokens >= capacity;
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
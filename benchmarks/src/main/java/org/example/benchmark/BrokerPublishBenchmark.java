@@ -0,0 +1,144 @@
+package org.example.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.service.impl.UpdateProducerImpl;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// messages/second through UpdateProducerImpl against a running broker, one message per confirm round trip
+// (batch-size 1) versus batches of 100; broker.host, broker.port, broker.username and broker.password
+// select the broker, e.g. java -Dbroker.host=localhost -jar benchmarks/target/benchmarks.jar BrokerPublish;
+// only acks count as published, nacked messages are retried by the producer and reported as nacks
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BrokerPublishBenchmark {
+    private static final int MESSAGES = 1000;
+    private static final String QUEUE = "benchmark_publish";
+
+    @Param({"1", "100"})
+    private int batchSize;
+
+    @Param({"1", "4"})
+    private int queues;
+
+    private final Semaphore confirmed = new Semaphore(0);
+    private final AtomicLong nacked = new AtomicLong();
+    private CachingConnectionFactory connectionFactory;
+    private RabbitAdmin rabbitAdmin;
+    private UpdateProducerImpl updateProducer;
+    private String[] queueNames;
+    private byte[][] bodies;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Confirms {
+        public long nacks;
+
+        @Setup(Level.Iteration)
+        public void reset(BrokerPublishBenchmark benchmark) {
+            benchmark.nacked.set(0);
+            nacks = 0;
+        }
+
+        @TearDown(Level.Iteration)
+        public void count(BrokerPublishBenchmark benchmark) {
+            nacks = benchmark.nacked.getAndSet(0);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        connectionFactory = new CachingConnectionFactory(System.getProperty("broker.host", "localhost"),
+                Integer.getInteger("broker.port", 5672));
+        connectionFactory.setUsername(System.getProperty("broker.username", "guest"));
+        connectionFactory.setPassword(System.getProperty("broker.password", "guest"));
+        connectionFactory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+
+        rabbitAdmin = new RabbitAdmin(connectionFactory);
+        queueNames = new String[queues];
+        for (var i = 0; i < queues; i++) {
+            queueNames[i] = QUEUE + "_" + i;
+            rabbitAdmin.declareQueue(new Queue(queueNames[i]));
+        }
+
+        var rabbitTemplate = new RabbitTemplate(connectionFactory);
+        rabbitTemplate.setMessageConverter(new Jackson2JsonMessageConverter());
+        rabbitTemplate.setConfirmCallback((correlationData, ack, cause) -> {
+            if (ack) {
+                confirmed.release();
+            } else {
+                nacked.incrementAndGet();
+            }
+        });
+
+        updateProducer = new UpdateProducerImpl(rabbitTemplate, new SimpleMeterRegistry());
+        Fields.set(updateProducer, "threads", 4);
+        Fields.set(updateProducer, "batchEnabled", true);
+        Fields.set(updateProducer, "batchSize", batchSize);
+        Fields.set(updateProducer, "lingerMs", 5L);
+        Fields.set(updateProducer, "confirmTimeoutMs", 5000L);
+        Fields.set(updateProducer, "maxAttempts", 5);
+        Fields.set(updateProducer, "retryBackoffMs", 200L);
+        updateProducer.init();
+
+        bodies = new byte[MESSAGES][];
+        for (var i = 0; i < MESSAGES; i++) {
+            bodies[i] = SampleUpdates.text(i, 1000L + i % queues);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void purge() {
+        for (var queue : queueNames) {
+            rabbitAdmin.purgeQueue(queue, false);
+        }
+        confirmed.drainPermits();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        updateProducer.shutdown();
+        for (var queue : queueNames) {
+            rabbitAdmin.deleteQueue(queue);
+        }
+        connectionFactory.destroy();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void publish(Confirms confirms) throws InterruptedException {
+        for (var i = 0; i < MESSAGES; i++) {
+            updateProducer.produce(queueNames[i % queues], bodies[i]);
+        }
+        if (!confirmed.tryAcquire(MESSAGES, 30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Broker did not ack " + MESSAGES + " messages in 30 seconds, "
+                    + nacked.get() + " nacks so far");
+        }
+    }
+}
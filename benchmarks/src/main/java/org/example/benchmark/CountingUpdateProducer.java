@@ -0,0 +1,41 @@
+package org.example.benchmark;
+
+import org.example.service.UpdateProducer;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+// stands in for the broker so only Dispatcher's own ingestion work is measured
+public class CountingUpdateProducer implements UpdateProducer {
+    private final LongAdder produced = new LongAdder();
+
+    public long produced() {
+        return produced.sum();
+    }
+
+    @Override
+    public void produce(String rabbitQueue, Update update) {
+        produced.increment();
+    }
+
+    @Override
+    public void produce(String rabbitQueue, Update update, Integer ackMessageId) {
+        produced.increment();
+    }
+
+    @Override
+    public void produce(String rabbitQueue, List<Update> updates) {
+        produced.add(updates.size());
+    }
+
+    @Override
+    public void produce(String rabbitQueue, byte[] rawUpdate) {
+        produced.increment();
+    }
+
+    @Override
+    public void produce(String rabbitQueue, byte[] rawUpdate, Integer ackMessageId) {
+        produced.increment();
+    }
+}
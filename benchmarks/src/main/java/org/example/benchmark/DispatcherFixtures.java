@@ -0,0 +1,53 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.configuration.RabbitConfiguration;
+import org.example.controller.UpdateProcessor;
+import org.example.controller.WebHookController;
+import org.example.service.UpdateDeduplicator;
+import org.example.service.UpdateProducer;
+import org.example.service.impl.UpdateBufferImpl;
+import org.example.utils.MessageUtils;
+import org.example.utils.RawUpdateParser;
+
+public final class DispatcherFixtures {
+    // every update id is new, so the deduplicator never skips work
+    private static final UpdateDeduplicator NO_DEDUPLICATION = new UpdateDeduplicator() {
+        @Override
+        public boolean isDuplicate(long updateId) {
+            return false;
+        }
+
+        @Override
+        public boolean isSeen(long updateId) {
+            return false;
+        }
+    };
+
+    private DispatcherFixtures() {
+    }
+
+    public static UpdateProcessor updateProcessor(UpdateProducer updateProducer, boolean editInPlace) {
+        var rabbitConfiguration = new RabbitConfiguration();
+        Fields.set(rabbitConfiguration, "textMessageUpdateQueue", "text_message_update");
+        Fields.set(rabbitConfiguration, "docMessageUpdateQueue", "doc_message_update");
+        Fields.set(rabbitConfiguration, "photoMessageUpdateQueue", "photo_message_update");
+        Fields.set(rabbitConfiguration, "partitions", 1);
+
+        var updateProcessor = new UpdateProcessor(new MessageUtils(), updateProducer, rabbitConfiguration, NO_DEDUPLICATION);
+        Fields.set(updateProcessor, "inlineReplies", true);
+        Fields.set(updateProcessor, "editInPlace", editInPlace);
+        return updateProcessor;
+    }
+
+    // routes on the request thread, as with ingestion.async: false
+    public static WebHookController webHookController(UpdateProcessor updateProcessor, ObjectMapper objectMapper,
+                                                      boolean passthrough) {
+        var meterRegistry = new SimpleMeterRegistry();
+        var updateBuffer = Fields.set(new UpdateBufferImpl(updateProcessor, meterRegistry, 1, 1), "async", false);
+        var webHookController = new WebHookController(updateBuffer, updateProcessor, NO_DEDUPLICATION,
+                new RawUpdateParser(), objectMapper, meterRegistry);
+        return Fields.set(webHookController, "passthrough", passthrough);
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.benchmark;
+
+import org.springframework.util.ReflectionUtils;
+
+public final class Fields {
+
+    private Fields() {
+    }
+
+    // stands in for the @Value injection the services get from Spring
+    public static <T> T set(T target, String name, Object value) {
+        var field = ReflectionUtils.findField(target.getClass(), name);
+        if (field == null) {
+            throw new IllegalArgumentException(target.getClass().getSimpleName() + " has no field " + name);
+        }
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+        return target;
+    }
+}
@@ -0,0 +1,169 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.example.controller.UpdateProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// updates/second into UpdateProcessor over loopback HTTP: webhook mode receives one POST per update from
+// connections parallel senders, polling mode fetches getUpdates batches of 100 from a stub Bot API;
+// nodelay keeps the stub server from adding delayed-ack stalls that the real endpoints do not have
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class IngestionModeBenchmark {
+    private static final int UPDATES = 100;
+
+    @State(Scope.Benchmark)
+    public static class Webhook {
+        @Param({"1", "8", "40"})
+        private int connections;
+
+        private final CountingUpdateProducer updateProducer = new CountingUpdateProducer();
+        private final AtomicInteger failures = new AtomicInteger();
+        private HttpServer server;
+        private ExecutorService serverThreads;
+        private HttpClient client;
+        private HttpRequest[] requests;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            var webHookController = DispatcherFixtures.webHookController(
+                    DispatcherFixtures.updateProcessor(updateProducer, true), new ObjectMapper(), true);
+            serverThreads = Executors.newFixedThreadPool(connections);
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.setExecutor(serverThreads);
+            server.createContext("/callback/update", exchange -> {
+                var response = webHookController.onUpdateReceived(exchange.getRequestBody().readAllBytes());
+                exchange.sendResponseHeaders(response.getStatusCodeValue(), -1);
+                exchange.close();
+            });
+            server.start();
+
+            client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            var uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/callback/update");
+            requests = new HttpRequest[UPDATES];
+            for (var i = 0; i < UPDATES; i++) {
+                requests[i] = HttpRequest.newBuilder(uri)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(SampleUpdates.text(i, 1000L + i)))
+                        .build();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            server.stop(0);
+            serverThreads.shutdownNow();
+            if (failures.get() > 0) {
+                throw new IllegalStateException(failures.get() + " webhook calls were not answered with 200");
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Polling {
+        private final CountingUpdateProducer updateProducer = new CountingUpdateProducer();
+        private UpdateProcessor updateProcessor;
+        private HttpServer server;
+        private DefaultAbsSender sender;
+        private GetUpdates getUpdates;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            updateProcessor = DispatcherFixtures.updateProcessor(updateProducer, true);
+
+            var result = new ByteArrayOutputStream();
+            result.writeBytes("{\"ok\":true,\"result\":[".getBytes(StandardCharsets.UTF_8));
+            for (var i = 0; i < UPDATES; i++) {
+                if (i > 0) {
+                    result.write(',');
+                }
+                result.writeBytes(SampleUpdates.text(i, 1000L + i));
+            }
+            result.writeBytes("]}".getBytes(StandardCharsets.UTF_8));
+            var getUpdatesResponse = result.toByteArray();
+
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/botbenchmark/getupdates", exchange -> {
+                exchange.getRequestBody().readAllBytes();
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, getUpdatesResponse.length);
+                exchange.getResponseBody().write(getUpdatesResponse);
+                exchange.close();
+            });
+            server.start();
+
+            var options = new DefaultBotOptions();
+            options.setBaseUrl("http://localhost:" + server.getAddress().getPort() + "/bot");
+            sender = new DefaultAbsSender(options) {
+                @Override
+                public String getBotToken() {
+                    return "benchmark";
+                }
+            };
+            getUpdates = GetUpdates.builder().offset(0).limit(UPDATES).timeout(0).build();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            server.stop(0);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(UPDATES)
+    public void webhook(Webhook state) throws InterruptedException {
+        var inFlight = new Semaphore(state.connections);
+        for (var request : state.requests) {
+            inFlight.acquire();
+            state.client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, e) -> {
+                        if (e != null || response.statusCode() != 200) {
+                            state.failures.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+        }
+        inFlight.acquire(state.connections);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(UPDATES)
+    public void polling(Polling state) throws TelegramApiException {
+        state.updateProcessor.processUpdates(state.sender.execute(state.getUpdates));
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.exceptions.UploadFileException;
+import org.example.service.TelegramFileClient;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+
+// what node's FileServiceImpl did before TelegramFileClientImpl: a new RestTemplate for every getFile
+// and a bare URL.openStream for every download
+public class LegacyTelegramFileClient implements TelegramFileClient {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String token;
+    private final String fileInfoUri;
+    private final String fileStorageUri;
+
+    public LegacyTelegramFileClient(String token, String fileInfoUri, String fileStorageUri) {
+        this.token = token;
+        this.fileInfoUri = fileInfoUri;
+        this.fileStorageUri = fileStorageUri;
+    }
+
+    @Override
+    public String getFilePath(String fileId) {
+        var restTemplate = new RestTemplate();
+        var response = restTemplate.exchange(fileInfoUri, HttpMethod.GET, new HttpEntity<>(new HttpHeaders()),
+                String.class, token, fileId);
+        try {
+            return objectMapper.readTree(response.getBody()).path("result").path("file_path").asText();
+        } catch (IOException e) {
+            throw new UploadFileException(e);
+        }
+    }
+
+    @Override
+    public long download(String filePath, OutputStream out) {
+        var fileUri = fileStorageUri.replace("{token}", token)
+                .replace("{filePath}", filePath);
+        try (var is = new URL(fileUri).openStream()) {
+            var bytes = is.readAllBytes();
+            out.write(bytes);
+            return bytes.length;
+        } catch (IOException e) {
+            throw new UploadFileException(fileUri, e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.benchmark;
+
+import org.example.service.UpdateProducer;
+import org.example.utils.UpdateHeaders;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJavaTypeMapper;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// builds each AMQP message the way UpdateProducerImpl does and stops short of the broker
+public class MessageBuildingUpdateProducer implements UpdateProducer {
+    private final MessageConverter messageConverter = new Jackson2JsonMessageConverter();
+    private volatile Message lastMessage;
+
+    public Message lastMessage() {
+        return lastMessage;
+    }
+
+    @Override
+    public void produce(String rabbitQueue, Update update) {
+        produce(rabbitQueue, update, null);
+    }
+
+    @Override
+    public void produce(String rabbitQueue, Update update, Integer ackMessageId) {
+        var properties = new MessageProperties();
+        setAckMessageId(properties, ackMessageId);
+        lastMessage = messageConverter.toMessage(update, properties);
+    }
+
+    @Override
+    public void produce(String rabbitQueue, List<Update> updates) {
+        for (var update : updates) {
+            produce(rabbitQueue, update);
+        }
+    }
+
+    @Override
+    public void produce(String rabbitQueue, byte[] rawUpdate) {
+        produce(rabbitQueue, rawUpdate, null);
+    }
+
+    @Override
+    public void produce(String rabbitQueue, byte[] rawUpdate, Integer ackMessageId) {
+        var properties = new MessageProperties();
+        setAckMessageId(properties, ackMessageId);
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setContentEncoding(StandardCharsets.UTF_8.name());
+        properties.setContentLength(rawUpdate.length);
+        properties.setHeader(AbstractJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME, Update.class.getName());
+        lastMessage = new Message(rawUpdate, properties);
+    }
+
+    private static void setAckMessageId(MessageProperties properties, Integer ackMessageId) {
+        if (ackMessageId != null) {
+            properties.setHeader(UpdateHeaders.ACK_MESSAGE_ID, ackMessageId);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// CPU and allocations per update to get raw_data's COPY row: the AMQP body bytes as received against the
+// already bound Update serialised back to JSON, as the jsonb mapping did before; run with -prof gc and compare
+// gc.alloc.rate.norm, e.g. java -jar benchmarks/target/benchmarks.jar RawDataPayload -prof gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RawDataPayloadBenchmark {
+    private static final Integer UPDATE_ID = 123456789;
+
+    @Param({"text", "document", "photo"})
+    private String type;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private byte[] body;
+    private Update update;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        switch (type) {
+            case "document":
+                body = SampleUpdates.document(UPDATE_ID, 1000L);
+                break;
+            case "photo":
+                body = SampleUpdates.photo(UPDATE_ID, 1000L);
+                break;
+            default:
+                body = SampleUpdates.text(UPDATE_ID, 1000L);
+        }
+        // the listener binds the Update either way, only the audit payload differs
+        update = objectMapper.readValue(body, Update.class);
+    }
+
+    @Benchmark
+    public int rawBytes() {
+        return copyRow(UPDATE_ID, body);
+    }
+
+    @Benchmark
+    public int reserialised() throws JsonProcessingException {
+        return copyRow(UPDATE_ID, objectMapper.writeValueAsString(update).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // the CSV row RawDataWriterImpl writes for COPY
+    private static int copyRow(Integer updateId, byte[] event) {
+        var csv = new ByteArrayOutputStream(event.length + 32);
+        csv.writeBytes(updateId.toString().getBytes(StandardCharsets.US_ASCII));
+        csv.write(',');
+        csv.write('"');
+        for (byte b : event) {
+            if (b == '"') {
+                csv.write('"');
+            }
+            csv.write(b);
+        }
+        csv.write('"');
+        csv.write('\n');
+        return csv.size();
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.benchmark;
+
+import java.nio.charset.StandardCharsets;
+
+public final class SampleUpdates {
+    private static final String FROM = "\"from\":{\"id\":%d,\"is_bot\":false,\"first_name\":\"Ivan\","
+            + "\"last_name\":\"Petrov\",\"username\":\"ivan_petrov\",\"language_code\":\"ru\"}";
+    private static final String CHAT = "\"chat\":{\"id\":%d,\"first_name\":\"Ivan\",\"last_name\":\"Petrov\","
+            + "\"username\":\"ivan_petrov\",\"type\":\"private\"}";
+
+    private SampleUpdates() {
+    }
+
+    public static byte[] text(int updateId, long chatId) {
+        return update(updateId, chatId, "\"text\":\"Привет! Пришли, пожалуйста, ссылку на последний документ\"");
+    }
+
+    public static byte[] document(int updateId, long chatId) {
+        return update(updateId, chatId, "\"document\":{\"file_name\":\"report-2023.pdf\",\"mime_type\":\"application/pdf\","
+                + "\"file_id\":\"BQACAgIAAxkBAAIBZ2VxY3Rlc3RfZG9jdW1lbnRfZmlsZV9pZAACQj0AAlQ8eUs\","
+                + "\"file_unique_id\":\"AgADQj0AAlQ8eUs\",\"file_size\":482133}");
+    }
+
+    public static byte[] photo(int updateId, long chatId) {
+        var sizes = new StringBuilder();
+        int[][] dimensions = {{90, 67}, {320, 240}, {800, 600}, {1280, 960}};
+        for (var i = 0; i < dimensions.length; i++) {
+            if (i > 0) {
+                sizes.append(',');
+            }
+            sizes.append(String.format("{\"file_id\":\"AgACAgIAAxkBAAIBaGVxY3Rlc3RfcGhvdG9fJWQAAkrWMRtUPHlL%d\","
+                            + "\"file_unique_id\":\"AQADStYxG1Q8eUt%d\",\"file_size\":%d,\"width\":%d,\"height\":%d}",
+                    i, i, dimensions[i][0] * dimensions[i][1] / 8, dimensions[i][0], dimensions[i][1]));
+        }
+        return update(updateId, chatId, "\"photo\":[" + sizes + "],\"caption\":\"Отпуск\"");
+    }
+
+    private static byte[] update(int updateId, long chatId, String content) {
+        var json = String.format("{\"update_id\":%d,\"message\":{\"message_id\":%d," + FROM + "," + CHAT
+                        + ",\"date\":1700000000,%s}}",
+                updateId, updateId % 100000, chatId, chatId, content);
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,129 @@
+package org.example.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// serves getFile and file downloads like api.telegram.org and counts the client connections it accepts;
+// an https server uses a throwaway self-signed certificate that sslContext() trusts
+public class StubTelegramServer implements AutoCloseable {
+    public static final String TOKEN = "benchmark";
+    private static final char[] PASSWORD = "benchmark".toCharArray();
+
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    private final HttpServer server;
+    private final ExecutorService serverThreads;
+    private final SSLContext sslContext;
+    private final byte[] file;
+
+    public StubTelegramServer(boolean https, int fileSize) throws IOException, GeneralSecurityException, InterruptedException {
+        file = new byte[fileSize];
+        serverThreads = Executors.newCachedThreadPool();
+        var address = new InetSocketAddress("localhost", 0);
+        if (https) {
+            sslContext = selfSignedContext();
+            var httpsServer = HttpsServer.create(address, 0);
+            httpsServer.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+            server = httpsServer;
+        } else {
+            sslContext = null;
+            server = HttpServer.create(address, 0);
+        }
+        server.setExecutor(serverThreads);
+        server.createContext("/bot" + TOKEN + "/getFile", this::getFile);
+        server.createContext("/file/bot" + TOKEN + "/", this::download);
+        server.start();
+    }
+
+    public String baseUri() {
+        return (sslContext != null ? "https" : "http") + "://localhost:" + server.getAddress().getPort();
+    }
+
+    public SSLContext sslContext() {
+        return sslContext;
+    }
+
+    // each client connection shows up as one remote port; over https every one of them is a TLS handshake
+    public synchronized int takeConnections() {
+        var count = connections.size();
+        connections.clear();
+        return count;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private void getFile(HttpExchange exchange) throws IOException {
+        connections.add(exchange.getRemoteAddress());
+        var response = "{\"ok\":true,\"result\":{\"file_id\":\"BQACAgIAAxkBAAIBZ2Vx\",\"file_unique_id\":\"AgADQj0\","
+                + "\"file_size\":" + file.length + ",\"file_path\":\"documents/file_1.pdf\"}}";
+        respond(exchange, "application/json", response.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void download(HttpExchange exchange) throws IOException {
+        connections.add(exchange.getRemoteAddress());
+        respond(exchange, "application/octet-stream", file);
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            requestBody.readAllBytes();
+        }
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+        try (var responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+
+    private static SSLContext selfSignedContext() throws IOException, GeneralSecurityException, InterruptedException {
+        var directory = Files.createTempDirectory("stub-telegram");
+        var keyStoreFile = directory.resolve("stub.p12");
+        var keytool = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                "-genkeypair", "-alias", "stub", "-keyalg", "RSA", "-keysize", "2048", "-validity", "2",
+                "-dname", "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1",
+                "-storetype", "PKCS12", "-keystore", keyStoreFile.toString(),
+                "-storepass", new String(PASSWORD), "-keypass", new String(PASSWORD))
+                .redirectErrorStream(true)
+                .start();
+        var output = new String(keytool.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        if (keytool.waitFor() != 0) {
+            throw new IOException("keytool failed: " + output);
+        }
+
+        var keyStore = KeyStore.getInstance("PKCS12");
+        try (var in = Files.newInputStream(keyStoreFile)) {
+            keyStore.load(in, PASSWORD);
+        }
+        Files.delete(keyStoreFile);
+        Files.delete(directory);
+
+        var keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, PASSWORD);
+        var trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(keyStore);
+        var sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+        return sslContext;
+    }
+}
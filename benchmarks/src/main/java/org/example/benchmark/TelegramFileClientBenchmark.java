@@ -0,0 +1,108 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.service.TelegramFileClient;
+import org.example.service.impl.TelegramFileClientImpl;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+// getFile plus download latency against a local stub of api.telegram.org, shared TelegramFileClientImpl against
+// the RestTemplate/URL.openStream code it replaced; the connections counter is the number of TCP connections
+// (TLS handshakes over https) the stub accepted in the iteration, next to the number of fetches made in it
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class TelegramFileClientBenchmark {
+
+    @Param({"http", "https"})
+    private String scheme;
+
+    @Param({"shared", "legacy"})
+    private String client;
+
+    @Param({"65536"})
+    private int fileSize;
+
+    private StubTelegramServer server;
+    private TelegramFileClient telegramFileClient;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Connections {
+        public long connections;
+        public long fetches;
+
+        @Setup(Level.Iteration)
+        public void reset(TelegramFileClientBenchmark benchmark) {
+            benchmark.server.takeConnections();
+            connections = 0;
+            fetches = 0;
+        }
+
+        // with several threads the first one to finish takes the whole iteration's count
+        @TearDown(Level.Iteration)
+        public void count(TelegramFileClientBenchmark benchmark) {
+            connections = benchmark.server.takeConnections();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new StubTelegramServer("https".equals(scheme), fileSize);
+        if (server.sslContext() != null) {
+            // both clients pick up the JVM defaults, which must trust the stub's certificate before they are built
+            SSLContext.setDefault(server.sslContext());
+            HttpsURLConnection.setDefaultSSLSocketFactory(server.sslContext().getSocketFactory());
+        }
+
+        var fileInfoUri = server.baseUri() + "/bot{token}/getFile?file_id={fileId}";
+        var fileStorageUri = server.baseUri() + "/file/bot{token}/{filePath}";
+        if ("legacy".equals(client)) {
+            telegramFileClient = new LegacyTelegramFileClient(StubTelegramServer.TOKEN, fileInfoUri, fileStorageUri);
+            return;
+        }
+
+        var sharedClient = new TelegramFileClientImpl(new ObjectMapper(), new SimpleMeterRegistry(), 5000, 16);
+        Fields.set(sharedClient, "token", StubTelegramServer.TOKEN);
+        Fields.set(sharedClient, "fileInfoUri", fileInfoUri);
+        Fields.set(sharedClient, "fileStorageUri", fileStorageUri);
+        Fields.set(sharedClient, "bufferSize", 65536);
+        Fields.set(sharedClient, "responseTimeoutMs", 30000L);
+        Fields.set(sharedClient, "readTimeoutMs", 30000L);
+        telegramFileClient = sharedClient;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public long fetch(Connections connections) {
+        var filePath = telegramFileClient.getFilePath("BQACAgIAAxkBAAIBZ2Vx");
+        var size = telegramFileClient.download(filePath, OutputStream.nullOutputStream());
+        connections.fetches++;
+        return size;
+    }
+}
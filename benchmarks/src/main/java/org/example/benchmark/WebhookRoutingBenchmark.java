@@ -0,0 +1,67 @@
+package org.example.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.controller.WebHookController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+
+import java.util.concurrent.TimeUnit;
+
+// CPU and allocations per webhook update from the request body to a built AMQP message, passthrough (raw bytes
+// routed by RawUpdateParser) against bound (Update bound by Jackson and re-serialised by the message converter);
+// run with -prof gc and compare gc.alloc.rate.norm, e.g. java -jar benchmarks/target/benchmarks.jar WebhookRouting -prof gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WebhookRoutingBenchmark {
+    private static final int UPDATE_IDS = 1 << 16;
+
+    @Param({"true", "false"})
+    private boolean passthrough;
+
+    @Param({"text", "document", "photo"})
+    private String type;
+
+    private MessageBuildingUpdateProducer updateProducer;
+    private WebHookController webHookController;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        updateProducer = new MessageBuildingUpdateProducer();
+        // without edit-in-place file acks go out inline, so no Bot API call is made
+        webHookController = DispatcherFixtures.webHookController(
+                DispatcherFixtures.updateProcessor(updateProducer, false), new ObjectMapper(), passthrough);
+
+        switch (type) {
+            case "document":
+                body = SampleUpdates.document(UPDATE_IDS, 1000L);
+                break;
+            case "photo":
+                body = SampleUpdates.photo(UPDATE_IDS, 1000L);
+                break;
+            default:
+                body = SampleUpdates.text(UPDATE_IDS, 1000L);
+        }
+    }
+
+    @Benchmark
+    public Message route() {
+        webHookController.onUpdateReceived(body);
+        return updateProducer.lastMessage();
+    }
+}
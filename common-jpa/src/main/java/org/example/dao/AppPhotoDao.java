@@ -1,7 +1,18 @@
 package org.example.dao;
 
 import org.example.entity.AppPhoto;
+import org.example.entity.BinaryContent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
 
 public interface AppPhotoDao extends JpaRepository<AppPhoto, Long> {
+    Optional<AppPhoto> findFirstByTelegramFileUniqueId(String telegramFileUniqueId);
+
+    @Modifying
+    @Query("update AppPhoto e set e.binaryContent = :binaryContent where e.id = :id and e.binaryContent is null")
+    int attachBinaryContent(@Param("id") Long id, @Param("binaryContent") BinaryContent binaryContent);
 }
@@ -1,7 +1,12 @@
 package org.example.dao;
 
 import org.example.entity.AppUser;
+import org.example.entity.enums.UserState;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -11,4 +16,14 @@ public interface AppUserDAO extends JpaRepository<AppUser, Long> {
     Optional<AppUser> findById(Long id);
 
     Optional<AppUser> findByEmail(String email);
+
+    @Transactional
+    @Modifying
+    @Query("update AppUser u set u.state = :state, u.email = :email where u.id = :id")
+    int updateStateAndEmail(@Param("id") Long id, @Param("state") UserState state, @Param("email") String email);
+
+    @Transactional
+    @Modifying
+    @Query("update AppUser u set u.isActive = true where u.id = :id")
+    int activate(@Param("id") Long id);
 }
@@ -12,7 +12,7 @@ import javax.persistence.*;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "app_document")
+@Table(name = "app_document", indexes = @Index(columnList = "telegramFileUniqueId"))
 public class AppDocument {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -20,9 +20,11 @@ public class AppDocument {
 
     private String telegramFileId;
 
+    private String telegramFileUniqueId;
+
     private String docName;
 
-    @OneToOne
+    @ManyToOne
     private BinaryContent binaryContent;
 
     private String mimeType;
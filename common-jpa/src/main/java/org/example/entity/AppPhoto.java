@@ -11,7 +11,7 @@ import javax.persistence.*;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "app_photo")
+@Table(name = "app_photo", indexes = @Index(columnList = "telegramFileUniqueId"))
 public class AppPhoto {
 
     @Id
@@ -20,7 +20,9 @@ public class AppPhoto {
 
     private String telegramFileId;
 
-    @OneToOne
+    private String telegramFileUniqueId;
+
+    @ManyToOne
     private BinaryContent binaryContent;
 
     private Integer fileSize;
@@ -1,6 +1,7 @@
 package org.example.entity;
 
 import lombok.*;
+import org.example.entity.enums.StorageType;
 
 import javax.persistence.*;
 
@@ -18,5 +19,15 @@ public class BinaryContent {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    private byte[] fileAsArrayOfBytes;
+    @Enumerated(EnumType.STRING)
+    private StorageType storageType;
+
+    private String locator;
+
+    private Long fileSize;
+
+    @Column(unique = true)
+    private String checksum;
+
+    private Long refCount;
 }
@@ -0,0 +1,6 @@
+package org.example.entity.enums;
+
+public enum StorageType {
+    POSTGRES,
+    FILESYSTEM
+}
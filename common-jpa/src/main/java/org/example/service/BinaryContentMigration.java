@@ -0,0 +1,7 @@
+package org.example.service;
+
+import org.example.entity.enums.StorageType;
+
+public interface BinaryContentMigration {
+    int migrate(StorageType target);
+}
@@ -0,0 +1,13 @@
+package org.example.service;
+
+import org.example.entity.BinaryContent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+public interface BinaryContentService {
+    BinaryContent save(Path source, long fileSize, String checksum) throws IOException;
+    void reference(BinaryContent binaryContent);
+    void transferTo(BinaryContent binaryContent, OutputStream out) throws IOException;
+}
@@ -0,0 +1,14 @@
+package org.example.service;
+
+import org.example.entity.enums.StorageType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+public interface BinaryContentStore {
+    StorageType getType();
+    String save(Path source, long fileSize, String checksum) throws IOException;
+    void transferTo(String locator, OutputStream out) throws IOException;
+    void delete(String locator) throws IOException;
+}
@@ -0,0 +1,148 @@
+package org.example.service.impl;
+
+import lombok.extern.log4j.Log4j;
+import org.example.entity.BinaryContent;
+import org.example.entity.enums.StorageType;
+import org.example.service.BinaryContentMigration;
+import org.example.service.BinaryContentService;
+import org.example.service.BinaryContentStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@Log4j
+@Service
+public class BinaryContentMigrationImpl implements BinaryContentMigration {
+    private static final String SELECT_PENDING =
+            "select id, storage_type, locator from binary_content " +
+            "where id > ? and (storage_type is null or storage_type <> ?) order by id limit ?";
+    private static final String SELECT_DUPLICATE =
+            "select id from binary_content where checksum = ? and id <> ?";
+    private static final String REPOINT_DOCUMENTS =
+            "update app_document set binary_content_id = ? where binary_content_id = ?";
+    private static final String REPOINT_PHOTOS =
+            "update app_photo set binary_content_id = ? where binary_content_id = ?";
+    private static final String ADD_REFERENCES =
+            "update binary_content set ref_count = coalesce(ref_count, 0) + ? where id = ?";
+    private static final String DELETE_CONTENT =
+            "delete from binary_content where id = ?";
+    private static final String MOVE_LEGACY_CONTENT =
+            "update binary_content set storage_type = ?, locator = ?, file_size = ?, checksum = ?, " +
+            "ref_count = (select count(*) from app_document where binary_content_id = ?) " +
+            "+ (select count(*) from app_photo where binary_content_id = ?), " +
+            "file_as_array_of_bytes = null where id = ?";
+    private static final String MOVE_CONTENT =
+            "update binary_content set storage_type = ?, locator = ? where id = ?";
+
+    @Value("${storage.migration.batch-size}")
+    private int batchSize;
+
+    private final BinaryContentService binaryContentService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<StorageType, BinaryContentStore> stores = new EnumMap<>(StorageType.class);
+
+    public BinaryContentMigrationImpl(BinaryContentService binaryContentService, JdbcTemplate jdbcTemplate,
+                                      PlatformTransactionManager transactionManager, List<BinaryContentStore> stores) {
+        this.binaryContentService = binaryContentService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        stores.forEach(store -> this.stores.put(store.getType(), store));
+    }
+
+    @Override
+    public int migrate(StorageType target) {
+        var store = stores.get(target);
+        int migrated = 0;
+        long lastId = 0;
+
+        while (true) {
+            var batch = jdbcTemplate.query(SELECT_PENDING,
+                    (resultSet, rowNum) -> BinaryContent.builder()
+                            .id(resultSet.getLong("id"))
+                            .storageType(resultSet.getString("storage_type") != null
+                                    ? StorageType.valueOf(resultSet.getString("storage_type"))
+                                    : null)
+                            .locator(resultSet.getString("locator"))
+                            .build(),
+                    lastId, target.name(), batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            for (var binaryContent : batch) {
+                lastId = binaryContent.getId();
+                try {
+                    migrate(binaryContent, store);
+                    migrated++;
+                } catch (IOException | RuntimeException e) {
+                    log.error("Failed to migrate binary content " + binaryContent.getId(), e);
+                }
+            }
+            log.info("Migrated " + migrated + " binary contents to " + target);
+        }
+        return migrated;
+    }
+
+    private void migrate(BinaryContent binaryContent, BinaryContentStore target) throws IOException {
+        var spoolFile = Files.createTempFile("migration-", ".part");
+        try {
+            var digest = sha256();
+            try (var out = new DigestOutputStream(Files.newOutputStream(spoolFile), digest)) {
+                binaryContentService.transferTo(binaryContent, out);
+            }
+            var checksum = String.format("%064x", new BigInteger(1, digest.digest()));
+            var fileSize = Files.size(spoolFile);
+            var id = binaryContent.getId();
+
+            if (binaryContent.getLocator() == null) {
+                var duplicates = jdbcTemplate.queryForList(SELECT_DUPLICATE, Long.class, checksum, id);
+                if (!duplicates.isEmpty()) {
+                    mergeInto(duplicates.get(0), id);
+                    return;
+                }
+            }
+
+            var locator = target.save(spoolFile, fileSize, checksum);
+            if (binaryContent.getLocator() == null) {
+                jdbcTemplate.update(MOVE_LEGACY_CONTENT,
+                        target.getType().name(), locator, fileSize, checksum, id, id, id);
+            } else {
+                jdbcTemplate.update(MOVE_CONTENT, target.getType().name(), locator, id);
+                stores.get(binaryContent.getStorageType()).delete(binaryContent.getLocator());
+            }
+        } finally {
+            Files.deleteIfExists(spoolFile);
+        }
+    }
+
+    private void mergeInto(Long survivorId, Long duplicateId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            int references = jdbcTemplate.update(REPOINT_DOCUMENTS, survivorId, duplicateId)
+                    + jdbcTemplate.update(REPOINT_PHOTOS, survivorId, duplicateId);
+            jdbcTemplate.update(ADD_REFERENCES, references, survivorId);
+            jdbcTemplate.update(DELETE_CONTENT, duplicateId);
+        });
+        log.debug("Merged binary content " + duplicateId + " into " + survivorId);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.example.service.impl;
+
+import lombok.extern.log4j.Log4j;
+import org.example.dao.BinaryContentDAO;
+import org.example.entity.BinaryContent;
+import org.example.entity.enums.StorageType;
+import org.example.service.BinaryContentService;
+import org.example.service.BinaryContentStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@Log4j
+@Service
+public class BinaryContentServiceImpl implements BinaryContentService {
+    private static final String INSERT_BINARY_CONTENT =
+            "insert into binary_content (storage_type, locator, file_size, checksum, ref_count) values (?, ?, ?, ?, 0) " +
+            "on conflict (checksum) do update set checksum = excluded.checksum " +
+            "returning id, storage_type, locator";
+    private static final String SELECT_BINARY_CONTENT_BY_CHECKSUM =
+            "select id from binary_content where checksum = ?";
+    private static final String REFERENCE_BINARY_CONTENT =
+            "update binary_content set ref_count = coalesce(ref_count, 0) + 1 where id = ?";
+    private static final String SELECT_LEGACY_CONTENT =
+            "select file_as_array_of_bytes from binary_content where id = ?";
+
+    @Value("${storage.type}")
+    private StorageType storageType;
+
+    private final BinaryContentDAO binaryContentDAO;
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<StorageType, BinaryContentStore> stores = new EnumMap<>(StorageType.class);
+
+    public BinaryContentServiceImpl(BinaryContentDAO binaryContentDAO, JdbcTemplate jdbcTemplate,
+                                    List<BinaryContentStore> stores) {
+        this.binaryContentDAO = binaryContentDAO;
+        this.jdbcTemplate = jdbcTemplate;
+        stores.forEach(store -> this.stores.put(store.getType(), store));
+    }
+
+    @Override
+    public BinaryContent save(Path source, long fileSize, String checksum) throws IOException {
+        var ids = jdbcTemplate.queryForList(SELECT_BINARY_CONTENT_BY_CHECKSUM, Long.class, checksum);
+        if (!ids.isEmpty()) {
+            log.debug("Reusing binary content " + ids.get(0) + " by checksum " + checksum);
+            return binaryContentDAO.getById(ids.get(0));
+        }
+
+        var store = stores.get(storageType);
+        var locator = store.save(source, fileSize, checksum);
+
+        var persisted = jdbcTemplate.queryForObject(INSERT_BINARY_CONTENT,
+                (resultSet, rowNum) -> BinaryContent.builder()
+                        .id(resultSet.getLong("id"))
+                        .storageType(StorageType.valueOf(resultSet.getString("storage_type")))
+                        .locator(resultSet.getString("locator"))
+                        .build(),
+                storageType.name(), locator, fileSize, checksum);
+
+        if (persisted.getStorageType() != storageType || !locator.equals(persisted.getLocator())) {
+            store.delete(locator);
+        }
+        return binaryContentDAO.getById(persisted.getId());
+    }
+
+    // ref_count only moves together with the app_document/app_photo row that points at the content
+    @Override
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void reference(BinaryContent binaryContent) {
+        if (binaryContent == null) {
+            return;
+        }
+        jdbcTemplate.update(REFERENCE_BINARY_CONTENT, binaryContent.getId());
+    }
+
+    @Override
+    public void transferTo(BinaryContent binaryContent, OutputStream out) throws IOException {
+        if (binaryContent.getLocator() == null) {
+            transferLegacyContent(binaryContent.getId(), out);
+            return;
+        }
+
+        var store = stores.get(binaryContent.getStorageType());
+        if (store == null) {
+            throw new IllegalStateException("No store for " + binaryContent.getStorageType());
+        }
+        store.transferTo(binaryContent.getLocator(), out);
+    }
+
+    private void transferLegacyContent(Long id, OutputStream out) throws IOException {
+        try {
+            jdbcTemplate.query(SELECT_LEGACY_CONTENT, resultSet -> {
+                try (InputStream is = resultSet.getBinaryStream(1)) {
+                    if (is != null) {
+                        is.transferTo(out);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, id);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.service.impl;
+
+import org.example.service.BinaryContentStore;
+import org.example.entity.enums.StorageType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+@Service
+public class FileSystemBinaryContentStore implements BinaryContentStore {
+    private final Path root;
+
+    public FileSystemBinaryContentStore(@Value("${storage.filesystem.root}") String root) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public StorageType getType() {
+        return StorageType.FILESYSTEM;
+    }
+
+    @Override
+    public String save(Path source, long fileSize, String checksum) throws IOException {
+        var locator = checksum.substring(0, 2) + "/" + checksum.substring(2, 4) + "/" + checksum;
+        var target = resolve(locator);
+        if (Files.exists(target)) {
+            return locator;
+        }
+
+        Files.createDirectories(target.getParent());
+        var partFile = Files.createTempFile(target.getParent(), checksum, ".part");
+        try (var in = FileChannel.open(source, StandardOpenOption.READ);
+             var out = FileChannel.open(partFile, StandardOpenOption.WRITE)) {
+            long position = 0;
+            while (position < fileSize) {
+                position += in.transferTo(position, fileSize - position, out);
+            }
+            out.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(partFile);
+            throw e;
+        }
+
+        Files.move(partFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return locator;
+    }
+
+    @Override
+    public void transferTo(String locator, OutputStream out) throws IOException {
+        var target = Channels.newChannel(out);
+        try (var in = FileChannel.open(resolve(locator), StandardOpenOption.READ)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, target);
+            }
+        }
+    }
+
+    @Override
+    public void delete(String locator) throws IOException {
+        Files.deleteIfExists(resolve(locator));
+    }
+
+    private Path resolve(String locator) {
+        var path = root.resolve(locator).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("Locator is outside of the storage root: " + locator);
+        }
+        return path;
+    }
+}
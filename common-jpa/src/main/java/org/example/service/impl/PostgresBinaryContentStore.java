@@ -0,0 +1,67 @@
+package org.example.service.impl;
+
+import org.example.service.BinaryContentStore;
+import org.example.entity.enums.StorageType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@Service
+public class PostgresBinaryContentStore implements BinaryContentStore {
+    private static final String INSERT_BLOB = "insert into binary_blob (data) values (?)";
+    private static final String SELECT_BLOB = "select data from binary_blob where id = ?";
+    private static final String DELETE_BLOB = "delete from binary_blob where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PostgresBinaryContentStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public StorageType getType() {
+        return StorageType.POSTGRES;
+    }
+
+    @Override
+    public String save(Path source, long fileSize, String checksum) throws IOException {
+        var keyHolder = new GeneratedKeyHolder();
+
+        try (InputStream is = Files.newInputStream(source)) {
+            jdbcTemplate.update(connection -> {
+                var statement = connection.prepareStatement(INSERT_BLOB, new String[]{"id"});
+                statement.setBinaryStream(1, is, (int) fileSize);
+                return statement;
+            }, keyHolder);
+        }
+
+        return String.valueOf(keyHolder.getKey().longValue());
+    }
+
+    @Override
+    public void transferTo(String locator, OutputStream out) throws IOException {
+        try {
+            jdbcTemplate.query(SELECT_BLOB, resultSet -> {
+                try (InputStream is = resultSet.getBinaryStream(1)) {
+                    is.transferTo(out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, Long.valueOf(locator));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public void delete(String locator) {
+        jdbcTemplate.update(DELETE_BLOB, Long.valueOf(locator));
+    }
+}
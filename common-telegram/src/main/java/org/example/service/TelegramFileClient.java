@@ -0,0 +1,8 @@
+package org.example.service;
+
+import java.io.OutputStream;
+
+public interface TelegramFileClient {
+    String getFilePath(String fileId);
+    long download(String filePath, OutputStream out);
+}
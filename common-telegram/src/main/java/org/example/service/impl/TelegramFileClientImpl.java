@@ -0,0 +1,276 @@
+package org.example.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.exceptions.UploadFileException;
+import org.example.service.TelegramFileClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@Service
+public class TelegramFileClientImpl implements TelegramFileClient {
+    private static final int OK = 200;
+
+    @Value("${token}")
+    private String token;
+
+    @Value("${service.file_info.uri}")
+    private String fileInfoUri;
+
+    @Value("${service.file_storage.uri}")
+    private String fileStorageUri;
+
+    @Value("${service.file_storage.buffer-size}")
+    private int bufferSize;
+
+    @Value("${service.http.response-timeout-ms}")
+    private long responseTimeoutMs;
+
+    @Value("${service.http.read-timeout-ms}")
+    private long readTimeoutMs;
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Semaphore permits;
+    private final MeterRegistry meterRegistry;
+    private final Timer permitWaitTimer;
+
+    public TelegramFileClientImpl(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                  @Value("${service.http.connect-timeout-ms}") long connectTimeoutMs,
+                                  @Value("${service.http.max-concurrent-requests}") int maxConcurrentRequests) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.objectMapper = objectMapper;
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.meterRegistry = meterRegistry;
+        this.permitWaitTimer = meterRegistry.timer("telegram.http.permit.wait");
+        Gauge.builder("telegram.http.in_flight", permits, p -> maxConcurrentRequests - p.availablePermits())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getFilePath(String fileId) {
+        var uri = fileInfoUri.replace("{token}", token)
+                .replace("{fileId}", URLEncoder.encode(fileId, StandardCharsets.UTF_8));
+
+        var response = execute("getFile", uri, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != OK) {
+            throw new UploadFileException("Bad response from telegram service: " + response.statusCode()
+                    + " " + response.body());
+        }
+
+        JsonNode filePath;
+        try {
+            filePath = objectMapper.readTree(response.body())
+                    .path("result")
+                    .path("file_path");
+        } catch (IOException e) {
+            throw new UploadFileException("Bad response from telegram service: " + response.body(), e);
+        }
+        if (!filePath.isTextual()) {
+            throw new UploadFileException("No file_path in telegram response: " + response.body());
+        }
+        return filePath.asText();
+    }
+
+    @Override
+    public long download(String filePath, OutputStream out) {
+        var uri = fileStorageUri.replace("{token}", token)
+                .replace("{filePath}", filePath);
+
+        acquirePermit();
+        var startedAt = System.nanoTime();
+        var status = "IO_ERROR";
+        try {
+            var body = new DownloadSubscriber(out, bufferSize);
+            var future = httpClient.sendAsync(request(uri), responseInfo -> responseInfo.statusCode() == OK
+                    ? body
+                    : HttpResponse.BodySubscribers.replacing(-1L));
+
+            // the request timeout only covers the response headers, a stalled body is caught here
+            HttpResponse<Long> response;
+            while (true) {
+                try {
+                    response = await(future, readTimeoutMs);
+                    break;
+                } catch (TimeoutException e) {
+                    if (body.idleMillis() > readTimeoutMs) {
+                        status = "READ_TIMEOUT";
+                        body.cancel();
+                        future.cancel(true);
+                        throw new UploadFileException("Download of " + filePath + " stalled for "
+                                + readTimeoutMs + " ms");
+                    }
+                }
+            }
+
+            status = String.valueOf(response.statusCode());
+            if (response.statusCode() != OK) {
+                throw new UploadFileException("Bad response from telegram file storage: " + response.statusCode());
+            }
+            return response.body();
+        } catch (IOException e) {
+            throw new UploadFileException(filePath, e);
+        } finally {
+            record("download", status, startedAt);
+            permits.release();
+        }
+    }
+
+    private <T> HttpResponse<T> execute(String operation, String uri, HttpResponse.BodyHandler<T> bodyHandler) {
+        acquirePermit();
+        var startedAt = System.nanoTime();
+        var status = "IO_ERROR";
+        var future = httpClient.sendAsync(request(uri), bodyHandler);
+        try {
+            var response = await(future, responseTimeoutMs + readTimeoutMs);
+            status = String.valueOf(response.statusCode());
+            return response;
+        } catch (TimeoutException e) {
+            status = "READ_TIMEOUT";
+            future.cancel(true);
+            throw new UploadFileException(operation + " timed out", e);
+        } catch (IOException e) {
+            throw new UploadFileException(operation, e);
+        } finally {
+            record(operation, status, startedAt);
+            permits.release();
+        }
+    }
+
+    private HttpRequest request(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .timeout(Duration.ofMillis(responseTimeoutMs))
+                .GET()
+                .build();
+    }
+
+    private static <T> T await(CompletableFuture<T> future, long timeoutMs) throws IOException, TimeoutException {
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new UploadFileException("Interrupted while calling telegram", e);
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof UploadFileException) {
+                throw (UploadFileException) cause;
+            }
+            throw new UploadFileException(cause);
+        }
+    }
+
+    private void acquirePermit() {
+        var startedAt = System.nanoTime();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UploadFileException("Interrupted while waiting for a telegram connection", e);
+        }
+        permitWaitTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private void record(String operation, String status, long startedAt) {
+        meterRegistry.timer("telegram.http.requests", "operation", operation, "status", status)
+                .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private static class DownloadSubscriber implements HttpResponse.BodySubscriber<Long> {
+        private final OutputStream out;
+        private final byte[] buffer;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private volatile Flow.Subscription subscription;
+        private volatile long lastActivity;
+        private long size;
+
+        private DownloadSubscriber(OutputStream out, int bufferSize) {
+            this.out = out;
+            this.buffer = new byte[bufferSize];
+        }
+
+        @Override
+        public CompletionStage<Long> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            lastActivity = System.nanoTime();
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            try {
+                for (var item : items) {
+                    while (item.hasRemaining()) {
+                        var length = Math.min(item.remaining(), buffer.length);
+                        item.get(buffer, 0, length);
+                        out.write(buffer, 0, length);
+                        size += length;
+                    }
+                }
+            } catch (IOException e) {
+                subscription.cancel();
+                result.completeExceptionally(e);
+                return;
+            }
+            lastActivity = System.nanoTime();
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(size);
+        }
+
+        private long idleMillis() {
+            var since = lastActivity;
+            return since == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - since);
+        }
+
+        private void cancel() {
+            var current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+            result.cancel(false);
+        }
+    }
+}
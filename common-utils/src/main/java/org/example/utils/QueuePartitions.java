@@ -0,0 +1,22 @@
+package org.example.utils;
+
+public class QueuePartitions {
+
+    private QueuePartitions() {
+    }
+
+    public static int partitionOf(long chatId, int partitions) {
+        return Math.floorMod(Long.hashCode(chatId), partitions);
+    }
+
+    public static String queueOf(String queue, long chatId, int partitions) {
+        return nameOf(queue, partitionOf(chatId, partitions), partitions);
+    }
+
+    public static String nameOf(String queue, int partition, int partitions) {
+        if (partitions <= 1) {
+            return queue;
+        }
+        return queue + "." + partition;
+    }
+}
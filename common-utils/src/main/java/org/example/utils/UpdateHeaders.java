@@ -0,0 +1,10 @@
+package org.example.utils;
+
+public class UpdateHeaders {
+    public static final String ACK_MESSAGE_ID = "x-ack-message-id";
+    public static final String UPLOAD_ATTEMPT = "x-upload-attempt";
+    public static final String ORIGINAL_QUEUE = "x-original-queue";
+
+    private UpdateHeaders() {
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.configuration;
+
+import org.example.utils.QueuePartitions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+
+@Component
+public class PartitionAssignment {
+
+    @Value("${spring.rabbitmq.partitions}")
+    private int partitions;
+
+    @Value("${node.instance-index}")
+    private int instanceIndex;
+
+    @Value("${node.instance-count}")
+    private int instanceCount;
+
+    public String[] queuesOf(String queue) {
+        var queues = new ArrayList<String>();
+        for (int partition = 0; partition < partitions; partition++) {
+            if (partition % instanceCount == instanceIndex) {
+                queues.add(QueuePartitions.nameOf(queue, partition, partitions));
+            }
+        }
+        return queues.toArray(new String[0]);
+    }
+}
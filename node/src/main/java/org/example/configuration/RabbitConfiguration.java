@@ -1,21 +1,134 @@
 package org.example.configuration;
 
 
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.AnonymousQueue;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 
 
 @Configuration
 public class RabbitConfiguration {
 
+    @Value("${node.files.prefetch}")
+    private int filesPrefetch;
+
+    @Value("${spring.rabbitmq.exchanges.app-user-invalidation}")
+    private String appUserInvalidationExchange;
+
+    @Value("${spring.rabbitmq.exchanges.deferred-upload}")
+    private String deferredUploadExchange;
+
+    @Value("${spring.rabbitmq.queues.deferred-upload}")
+    private String deferredUploadQueue;
+
+    @Value("${node.files.admission.defer-delay}")
+    private Duration deferDelay;
+
+    @Value("${spring.rabbitmq.exchanges.upload-retry}")
+    private String uploadRetryExchange;
+
+    @Value("${spring.rabbitmq.queues.upload-parking}")
+    private String uploadParkingQueue;
+
+    @Value("${node.files.retry.delays}")
+    private List<Duration> uploadRetryDelays;
+
+    public int uploadRetryTiers() {
+        return uploadRetryDelays.size();
+    }
+
+    public String uploadRetryExchangeOf(int tier) {
+        return uploadRetryExchange + "." + uploadRetryDelays.get(tier).toMillis() + "ms";
+    }
+
+    public String uploadParkingQueue() {
+        return uploadParkingQueue;
+    }
+
     @Bean
     public MessageConverter jsonMessageConvertor(){
         return new Jackson2JsonMessageConverter();
     }
 
+    @Bean
+    public SimpleRabbitListenerContainerFactory fileListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory) {
+        var factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setPrefetchCount(filesPrefetch);
+        return factory;
+    }
+
+    @Bean
+    public FanoutExchange appUserInvalidationExchange() {
+        return new FanoutExchange(appUserInvalidationExchange);
+    }
+
+    @Bean
+    public Queue appUserInvalidationQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding appUserInvalidationBinding() {
+        return BindingBuilder.bind(appUserInvalidationQueue()).to(appUserInvalidationExchange());
+    }
+
+    @Bean
+    public FanoutExchange deferredUploadExchange() {
+        return new FanoutExchange(deferredUploadExchange);
+    }
+
+    @Bean
+    public Queue deferredUploadQueue() {
+        return QueueBuilder.durable(deferredUploadQueue)
+                .ttl((int) deferDelay.toMillis())
+                .deadLetterExchange("")
+                .build();
+    }
+
+    @Bean
+    public Binding deferredUploadBinding() {
+        return BindingBuilder.bind(deferredUploadQueue()).to(deferredUploadExchange());
+    }
+
+    @Bean
+    public Declarables uploadRetryQueues() {
+        var declarables = new ArrayList<Declarable>();
+        for (int tier = 0; tier < uploadRetryDelays.size(); tier++) {
+            var name = uploadRetryExchangeOf(tier);
+            var exchange = new FanoutExchange(name);
+            var queue = QueueBuilder.durable(name)
+                    .ttl((int) uploadRetryDelays.get(tier).toMillis())
+                    .deadLetterExchange("")
+                    .build();
+            declarables.add(exchange);
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(exchange));
+        }
+        declarables.add(QueueBuilder.durable(uploadParkingQueue).build());
+        return new Declarables(declarables);
+    }
+
 
 }
@@ -0,0 +1,32 @@
+package org.example.configuration;
+
+import lombok.extern.log4j.Log4j;
+import org.example.entity.enums.StorageType;
+import org.example.service.BinaryContentMigration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Log4j
+@Component
+@ConditionalOnProperty(name = "storage.migration.enabled", havingValue = "true")
+public class StorageMigrationRunner implements ApplicationRunner {
+
+    @Value("${storage.type}")
+    private StorageType storageType;
+
+    private final BinaryContentMigration binaryContentMigration;
+
+    public StorageMigrationRunner(BinaryContentMigration binaryContentMigration) {
+        this.binaryContentMigration = binaryContentMigration;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        log.info("Migrating binary content to " + storageType);
+        var migrated = binaryContentMigration.migrate(storageType);
+        log.info("Binary content migration finished, migrated: " + migrated);
+    }
+}
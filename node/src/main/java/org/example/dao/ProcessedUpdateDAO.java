@@ -0,0 +1,17 @@
+package org.example.dao;
+
+import org.example.entity.ProcessedUpdate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface ProcessedUpdateDAO extends JpaRepository<ProcessedUpdate, Long> {
+    @Modifying
+    @Transactional
+    @Query("delete from ProcessedUpdate p where p.processedAt < :processedAt")
+    int deleteProcessedBefore(@Param("processedAt") LocalDateTime processedAt);
+}
@@ -1,7 +0,0 @@
-package org.example.dao;
-
-import org.example.entity.RawData;
-import org.springframework.data.jpa.repository.JpaRepository;
-
-public interface RawDataDAO extends JpaRepository<RawData, Long> {
-}
@@ -0,0 +1,16 @@
+package org.example.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.concurrent.CompletableFuture;
+
+@Getter
+@RequiredArgsConstructor
+public class MediaGroupItem {
+    private final Update update;
+    private final Integer ackMessageId;
+    private final boolean lastAttempt;
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+}
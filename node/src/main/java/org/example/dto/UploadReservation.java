@@ -0,0 +1,11 @@
+package org.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class UploadReservation {
+    private final Long telegramUserId;
+    private final long bytes;
+}
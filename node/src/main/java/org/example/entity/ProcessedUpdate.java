@@ -0,0 +1,29 @@
+package org.example.entity;
+
+import lombok.*;
+import org.example.service.enums.LinkType;
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@EqualsAndHashCode
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "processed_update", indexes = @Index(columnList = "processedAt"))
+public class ProcessedUpdate {
+    @Id
+    private Long updateId;
+
+    @Enumerated(EnumType.STRING)
+    private LinkType linkType;
+
+    private Long entityId;
+
+    @CreationTimestamp
+    private LocalDateTime processedAt;
+}
@@ -1,29 +0,0 @@
-package org.example.entity;
-
-import com.vladmihalcea.hibernate.type.json.JsonBinaryType;
-import lombok.*;
-import org.hibernate.annotations.Type;
-import org.hibernate.annotations.TypeDef;
-import org.telegram.telegrambots.meta.api.objects.Update;
-
-import javax.persistence.*;
-
-//@Data
-@Getter
-@Setter
-@EqualsAndHashCode(exclude = "id")
-@Builder
-@NoArgsConstructor
-@AllArgsConstructor
-@Entity
-@Table(name = "raw_data")
-@TypeDef(name = "jsonb", typeClass = JsonBinaryType.class)
-public class RawData {
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
-
-    @Type(type = "jsonb")
-    @Column(columnDefinition = "jsonb")
-    private Update event;
-}
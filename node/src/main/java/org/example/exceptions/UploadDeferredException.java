@@ -0,0 +1,7 @@
+package org.example.exceptions;
+
+public class UploadDeferredException extends RuntimeException {
+    public UploadDeferredException(String message) {
+        super(message);
+    }
+}
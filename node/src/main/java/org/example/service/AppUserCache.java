@@ -0,0 +1,12 @@
+package org.example.service;
+
+import org.example.entity.AppUser;
+
+import java.util.Optional;
+
+public interface AppUserCache {
+    Optional<AppUser> findByTelegramUserId(Long telegramUserId);
+    AppUser save(AppUser appUser);
+    void update(AppUser appUser);
+    void invalidate(Long telegramUserId);
+}
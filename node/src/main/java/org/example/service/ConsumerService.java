@@ -1,9 +1,13 @@
 package org.example.service;
 
+import com.rabbitmq.client.Channel;
+import org.springframework.amqp.core.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
 public interface ConsumerService {
-    void consumeTextMessageUpdates(Update update);
-    void consumeDocMessageUpdates(Update update);
-    void consumePhotoMessageUpdates(Update update);
+    void consumeTextMessageUpdates(Update update, Message message);
+    void consumeDocMessageUpdates(Update update, Message message, Integer ackMessageId,
+                                  Channel channel, long deliveryTag, boolean redelivered);
+    void consumePhotoMessageUpdates(Update update, Message message, Integer ackMessageId,
+                                    Channel channel, long deliveryTag, boolean redelivered);
 }
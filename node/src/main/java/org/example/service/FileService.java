@@ -5,8 +5,14 @@ import org.example.entity.AppPhoto;
 import org.example.service.enums.LinkType;
 import org.telegram.telegrambots.meta.api.objects.Message;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 public interface FileService {
-    AppDocument processDoc(Message telegramMessage);
-    AppPhoto processPhoto(Message telegramMessage);
+    CompletableFuture<AppDocument> processDoc(Message telegramMessage);
+    CompletableFuture<AppPhoto> processPhoto(Message telegramMessage);
+    CompletableFuture<AppDocument> fetchDoc(Message telegramMessage);
+    CompletableFuture<AppPhoto> fetchPhoto(Message telegramMessage);
+    CompletableFuture<Void> saveMediaGroup(List<AppDocument> appDocs, List<AppPhoto> appPhotos);
     String generateLink(Long docId, LinkType linkType);
 }
@@ -2,9 +2,12 @@ package org.example.service;
 
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface MainService {
     void processTextMessage(Update update);
-    void processDocMessage(Update update);
-    void processPhotoMessage(Update update);
+    CompletableFuture<Void> processDocMessage(Update update, Integer ackMessageId, boolean lastAttempt);
+    CompletableFuture<Void> processPhotoMessage(Update update, Integer ackMessageId, boolean lastAttempt);
+    void processUploadFailure(Update update, Integer ackMessageId);
 
 }
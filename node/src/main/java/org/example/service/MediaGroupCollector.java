@@ -0,0 +1,15 @@
+package org.example.service;
+
+import org.example.dto.MediaGroupItem;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public interface MediaGroupCollector {
+    CompletableFuture<Void> collect(Update update, Integer ackMessageId, boolean lastAttempt,
+                                    Consumer<List<MediaGroupItem>> groupHandler,
+                                    Supplier<CompletableFuture<Void>> lateItemHandler);
+}
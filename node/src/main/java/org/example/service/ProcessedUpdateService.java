@@ -0,0 +1,11 @@
+package org.example.service;
+
+import org.example.entity.ProcessedUpdate;
+import org.example.service.enums.LinkType;
+
+import java.util.Optional;
+
+public interface ProcessedUpdateService {
+    Optional<ProcessedUpdate> find(Integer updateId);
+    void record(Integer updateId, LinkType linkType, Long entityId);
+}
@@ -1,7 +1,11 @@
 package org.example.service;
 
+import org.springframework.amqp.core.Message;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 
 public interface ProducerService {
     void producerAnswer(SendMessage sendMessage);
+    void producerAnswer(EditMessageText editMessageText);
+    void producerDeferred(Message message);
 }
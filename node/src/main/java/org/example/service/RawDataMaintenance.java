@@ -0,0 +1,5 @@
+package org.example.service;
+
+public interface RawDataMaintenance {
+    void maintain();
+}
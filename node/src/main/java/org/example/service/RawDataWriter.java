@@ -0,0 +1,5 @@
+package org.example.service;
+
+public interface RawDataWriter {
+    void write(Integer updateId, byte[] rawUpdate);
+}
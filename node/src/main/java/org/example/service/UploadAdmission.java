@@ -0,0 +1,10 @@
+package org.example.service;
+
+import org.example.dto.UploadReservation;
+
+import java.util.Optional;
+
+public interface UploadAdmission {
+    Optional<UploadReservation> tryReserve(Long telegramUserId, Long announcedFileSize);
+    void release(UploadReservation reservation);
+}
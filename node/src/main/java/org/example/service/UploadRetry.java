@@ -0,0 +1,9 @@
+package org.example.service;
+
+import org.springframework.amqp.core.Message;
+
+public interface UploadRetry {
+    boolean isLastAttempt(Message message);
+    void retry(Message message);
+    void park(Message message);
+}
@@ -0,0 +1,8 @@
+package org.example.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+public interface UserMailboxes {
+    <T> CompletableFuture<T> submit(Long telegramUserId, Supplier<T> task);
+}
@@ -0,0 +1,91 @@
+package org.example.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.log4j.Log4j;
+import org.example.dao.AppUserDAO;
+import org.example.entity.AppUser;
+import org.example.service.AppUserCache;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+
+@Service
+@Log4j
+public class AppUserCacheImpl implements AppUserCache {
+    private final AppUserDAO appUserDAO;
+    private final Cache<Long, AppUser> cache;
+
+    public AppUserCacheImpl(AppUserDAO appUserDAO, MeterRegistry meterRegistry,
+                            @Value("${node.app-user-cache.maximum-size}") long maximumSize,
+                            @Value("${node.app-user-cache.expire-after-write}") Duration expireAfterWrite) {
+        this.appUserDAO = appUserDAO;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "appUser");
+    }
+
+    @Override
+    public Optional<AppUser> findByTelegramUserId(Long telegramUserId) {
+        var appUser = cache.get(telegramUserId, id -> appUserDAO.findByTelegramUserId(id).orElse(null));
+        return Optional.ofNullable(appUser).map(AppUserCacheImpl::copyOf);
+    }
+
+    @Override
+    public AppUser save(AppUser appUser) {
+        var persistentAppUser = appUserDAO.save(appUser);
+        var telegramUserId = persistentAppUser.getTelegramUserId();
+        var cachedAppUser = copyOf(persistentAppUser);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.invalidate(telegramUserId);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.put(telegramUserId, cachedAppUser);
+                }
+            });
+        } else {
+            cache.put(telegramUserId, cachedAppUser);
+        }
+        return persistentAppUser;
+    }
+
+    // only state and email belong to node, a full save of the cached copy could undo an activation by rest-service
+    @Override
+    public void update(AppUser appUser) {
+        var telegramUserId = appUser.getTelegramUserId();
+        appUserDAO.updateStateAndEmail(appUser.getId(), appUser.getState(), appUser.getEmail());
+
+        cache.invalidate(telegramUserId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(telegramUserId);
+                }
+            });
+        }
+    }
+
+    @Override
+    @RabbitListener(queues = "#{appUserInvalidationQueue.name}")
+    public void invalidate(Long telegramUserId) {
+        log.debug("NODE: App user " + telegramUserId + " is invalidated");
+        cache.invalidate(telegramUserId);
+    }
+
+    private static AppUser copyOf(AppUser appUser) {
+        return appUser.toBuilder().build();
+    }
+}
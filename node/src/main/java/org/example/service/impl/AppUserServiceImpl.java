@@ -4,6 +4,7 @@ import lombok.extern.log4j.Log4j;
 import org.example.dao.AppUserDAO;
 import org.example.dto.MailParams;
 import org.example.entity.AppUser;
+import org.example.service.AppUserCache;
 import org.example.service.AppUserService;
 import org.example.utils.CryptoTool;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -22,6 +23,7 @@ import static org.example.entity.enums.UserState.WAIT_FOR_EMAIL_STATE;
 @Log4j
 public class AppUserServiceImpl implements AppUserService {
     private final AppUserDAO appUserDAO;
+    private final AppUserCache appUserCache;
     private final CryptoTool cryptoTool;
 
     @Value("${spring.rabbitmq.queues.registration-mail}")
@@ -29,8 +31,10 @@ public class AppUserServiceImpl implements AppUserService {
 
     private final RabbitTemplate rabbitTemplate;
 
-    public AppUserServiceImpl(AppUserDAO appUserDAO, CryptoTool cryptoTool, RabbitTemplate rabbitTemplate) {
+    public AppUserServiceImpl(AppUserDAO appUserDAO, AppUserCache appUserCache, CryptoTool cryptoTool,
+                              RabbitTemplate rabbitTemplate) {
         this.appUserDAO = appUserDAO;
+        this.appUserCache = appUserCache;
         this.cryptoTool = cryptoTool;
         this.rabbitTemplate = rabbitTemplate;
     }
@@ -44,7 +48,7 @@ public class AppUserServiceImpl implements AppUserService {
         }
 
         appUser.setState(WAIT_FOR_EMAIL_STATE);
-        appUserDAO.save(appUser);
+        appUserCache.update(appUser);
         return "Введите ваш email";
     }
 
@@ -62,7 +66,7 @@ public class AppUserServiceImpl implements AppUserService {
         if(appUserOpt.isEmpty()){
             appUser.setEmail(email);
             appUser.setState(BASIC_STATE);
-            appUser = appUserDAO.save(appUser);
+            appUserCache.update(appUser);
 
             var cryptoUserId = cryptoTool.hashOf(appUser.getId());
             sendRequestToMailService(cryptoUserId, email);
@@ -1,42 +1,170 @@
 package org.example.service.impl;
 
+import com.rabbitmq.client.Channel;
 import lombok.extern.log4j.Log4j;
 import org.example.service.ConsumerService;
+import org.example.exceptions.UploadDeferredException;
+import org.example.exceptions.UploadFileException;
 import org.example.service.MainService;
+import org.example.service.ProducerService;
+import org.example.service.RawDataWriter;
+import org.example.service.UploadRetry;
+import org.example.service.UserMailboxes;
+import org.example.utils.UpdateHeaders;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 
 @Service
 @Log4j
 public class ConsumerServiceImpl implements ConsumerService {
     private final MainService mainService;
+    private final RawDataWriter rawDataWriter;
+    private final ProducerService producerService;
+    private final UserMailboxes userMailboxes;
+    private final UploadRetry uploadRetry;
 
-    public ConsumerServiceImpl(MainService mainService) {
+    public ConsumerServiceImpl(MainService mainService, RawDataWriter rawDataWriter, ProducerService producerService,
+                               UserMailboxes userMailboxes, UploadRetry uploadRetry) {
         this.mainService = mainService;
+        this.rawDataWriter = rawDataWriter;
+        this.producerService = producerService;
+        this.userMailboxes = userMailboxes;
+        this.uploadRetry = uploadRetry;
     }
 
     @Override
-    @RabbitListener(queues = "${spring.rabbitmq.queues.text-message-update}")
-    public void consumeTextMessageUpdates(Update update) {
+    @RabbitListener(queues = "#{@partitionAssignment.queuesOf('${spring.rabbitmq.queues.text-message-update}')}",
+            concurrency = "${node.text.concurrency}")
+    public void consumeTextMessageUpdates(@Payload Update update, Message message) {
         log.debug("NODE: Text message is received");
+        rawDataWriter.write(update.getUpdateId(), message.getBody());
 
-        mainService.processTextMessage(update);
+        // the listener thread waits, so the delivery is still acked only after the user's update is processed
+        var processing = userMailboxes.submit(telegramUserIdOf(update), () -> {
+            mainService.processTextMessage(update);
+            return null;
+        });
+        try {
+            processing.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
     }
 
     @Override
-    @RabbitListener(queues = "${spring.rabbitmq.queues.doc-message-update}")
-    public void consumeDocMessageUpdates(Update update) {
+    @RabbitListener(queues = "#{@partitionAssignment.queuesOf('${spring.rabbitmq.queues.doc-message-update}')}",
+            containerFactory = "fileListenerContainerFactory", concurrency = "${node.files.concurrency}")
+    public void consumeDocMessageUpdates(@Payload Update update, Message message,
+                                         @Header(name = UpdateHeaders.ACK_MESSAGE_ID, required = false) Integer ackMessageId,
+                                         Channel channel,
+                                         @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
+                                         @Header(AmqpHeaders.REDELIVERED) boolean redelivered) {
         log.debug("NODE: Doc message is received");
-        mainService.processDocMessage(update);
+        rawDataWriter.write(update.getUpdateId(), message.getBody());
+        var lastAttempt = uploadRetry.isLastAttempt(message);
+        acknowledgeOnCompletion(() -> userMailboxes
+                        .submit(telegramUserIdOf(update),
+                                () -> mainService.processDocMessage(update, ackMessageId, lastAttempt))
+                        .thenCompose(processing -> processing),
+                () -> mainService.processUploadFailure(update, ackMessageId),
+                message, channel, deliveryTag, redelivered);
     }
 
     @Override
-    @RabbitListener(queues = "${spring.rabbitmq.queues.photo-message-update}")
-    public void consumePhotoMessageUpdates(Update update) {
+    @RabbitListener(queues = "#{@partitionAssignment.queuesOf('${spring.rabbitmq.queues.photo-message-update}')}",
+            containerFactory = "fileListenerContainerFactory", concurrency = "${node.files.concurrency}")
+    public void consumePhotoMessageUpdates(@Payload Update update, Message message,
+                                           @Header(name = UpdateHeaders.ACK_MESSAGE_ID, required = false) Integer ackMessageId,
+                                           Channel channel,
+                                           @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
+                                           @Header(AmqpHeaders.REDELIVERED) boolean redelivered) {
         log.debug("NODE: Photo message is received");
-        mainService.processPhotoMessage(update);
+        rawDataWriter.write(update.getUpdateId(), message.getBody());
+        var lastAttempt = uploadRetry.isLastAttempt(message);
+        acknowledgeOnCompletion(() -> userMailboxes
+                        .submit(telegramUserIdOf(update),
+                                () -> mainService.processPhotoMessage(update, ackMessageId, lastAttempt))
+                        .thenCompose(processing -> processing),
+                () -> mainService.processUploadFailure(update, ackMessageId),
+                message, channel, deliveryTag, redelivered);
+    }
+
+    private void acknowledgeOnCompletion(Supplier<CompletableFuture<Void>> processing, Runnable failureAnswer,
+                                         Message message, Channel channel, long deliveryTag, boolean redelivered) {
+        CompletableFuture<Void> future;
+        try {
+            future = processing.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        future.whenComplete((result, e) -> {
+            try {
+                if (e == null) {
+                    channel.basicAck(deliveryTag, false);
+                } else if (causeOf(e) instanceof UploadDeferredException) {
+                    log.debug("NODE: Delivery " + deliveryTag + " is deferred: " + e.getMessage());
+                    republish(() -> producerService.producerDeferred(message), channel, deliveryTag);
+                } else if (causeOf(e) instanceof UploadFileException) {
+                    if (uploadRetry.isLastAttempt(message)) {
+                        republish(() -> uploadRetry.park(message), channel, deliveryTag);
+                    } else {
+                        log.debug("NODE: Delivery " + deliveryTag + " is scheduled for retry: " + e.getMessage());
+                        republish(() -> uploadRetry.retry(message), channel, deliveryTag);
+                    }
+                } else if (!redelivered) {
+                    log.error("Failed to process delivery " + deliveryTag + ", requeue", e);
+                    channel.basicNack(deliveryTag, false, true);
+                } else {
+                    // the partition queues have no DLX: a second failure is parked and answered, never dropped
+                    log.error("Failed to process redelivered delivery " + deliveryTag + ", parking it", e);
+                    if (republish(() -> uploadRetry.park(message), channel, deliveryTag)) {
+                        answerFailure(failureAnswer, deliveryTag);
+                    }
+                }
+            } catch (IOException ioException) {
+                log.error("Failed to settle delivery " + deliveryTag, ioException);
+            }
+        });
+    }
+
+    private void answerFailure(Runnable failureAnswer, long deliveryTag) {
+        try {
+            failureAnswer.run();
+        } catch (RuntimeException e) {
+            log.error("Failed to answer parked delivery " + deliveryTag, e);
+        }
+    }
+
+    private boolean republish(Runnable publishing, Channel channel, long deliveryTag) throws IOException {
+        try {
+            publishing.run();
+        } catch (RuntimeException e) {
+            log.error("Failed to republish delivery " + deliveryTag + ", requeue", e);
+            channel.basicNack(deliveryTag, false, true);
+            return false;
+        }
+        channel.basicAck(deliveryTag, false);
+        return true;
+    }
+
+    private static Long telegramUserIdOf(Update update) {
+        var message = update.getMessage();
+        return message.getFrom() != null ? message.getFrom().getId() : message.getChatId();
+    }
+
+    private static Throwable causeOf(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
     }
 }
@@ -1,78 +1,154 @@
 package org.example.service.impl;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import lombok.extern.log4j.Log4j;
 import org.example.dao.AppDocumentDAO;
 import org.example.dao.AppPhotoDao;
-import org.example.dao.BinaryContentDAO;
 import org.example.entity.AppDocument;
 import org.example.entity.AppPhoto;
 import org.example.entity.BinaryContent;
+import org.example.exceptions.UploadDeferredException;
 import org.example.exceptions.UploadFileException;
+import org.example.service.BinaryContentService;
 import org.example.service.FileService;
+import org.example.service.TelegramFileClient;
+import org.example.service.UploadAdmission;
+import org.example.service.enums.FetchMode;
 import org.example.service.enums.LinkType;
 import org.example.utils.CryptoTool;
-import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.telegram.telegrambots.meta.api.objects.Document;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.PhotoSize;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Log4j
 @Service
 public class FileServiceImpl implements FileService {
+    @Value("${link.address}")
+    private String linkAddress;
 
-    @Value("${token}")
-    private String token;
+    @Value("${node.files.fetch-mode}")
+    private FetchMode fetchMode;
 
-    @Value("${service.file_info.uri}")
-    private String fileInfoUri;
+    @Value("${node.files.metadata-threads}")
+    private int metadataThreads;
 
-    @Value("${service.file_storage.uri}")
-    private String fileStorageUri;
+    @Value("${node.files.download-threads}")
+    private int downloadThreads;
 
-    @Value("${link.address}")
-    private String linkAddress;
+    @Value("${node.files.persistence-threads}")
+    private int persistenceThreads;
+
+    @Value("${node.files.stage-queue-capacity}")
+    private int stageQueueCapacity;
+
+    @Value("${node.files.stage-handoff-timeout}")
+    private Duration stageHandoffTimeout;
 
     private final AppDocumentDAO appDocumentDAO;
-    private final BinaryContentDAO binaryContentDAO;
     private final AppPhotoDao appPhotoDao;
+    private final BinaryContentService binaryContentService;
+    private final TelegramFileClient telegramFileClient;
+    private final UploadAdmission uploadAdmission;
 
     private final CryptoTool cryptoTool;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+
+    private ExecutorService metadataExecutor;
+    private ExecutorService downloadExecutor;
+    private ExecutorService persistenceExecutor;
 
-    public FileServiceImpl(AppDocumentDAO appDocumentDAO, BinaryContentDAO binaryContentDAO, AppPhotoDao appPhotoDao, CryptoTool cryptoTool) {
+    public FileServiceImpl(AppDocumentDAO appDocumentDAO, AppPhotoDao appPhotoDao,
+                           BinaryContentService binaryContentService, TelegramFileClient telegramFileClient,
+                           UploadAdmission uploadAdmission, CryptoTool cryptoTool, MeterRegistry meterRegistry,
+                           PlatformTransactionManager transactionManager) {
         this.appDocumentDAO = appDocumentDAO;
-        this.binaryContentDAO = binaryContentDAO;
         this.appPhotoDao = appPhotoDao;
+        this.binaryContentService = binaryContentService;
+        this.telegramFileClient = telegramFileClient;
+        this.uploadAdmission = uploadAdmission;
         this.cryptoTool = cryptoTool;
+        this.meterRegistry = meterRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() {
+        // metadata is fed from user mailbox threads, so a full metadata queue defers instead of blocking them
+        metadataExecutor = newStageExecutor("metadata", metadataThreads, Duration.ZERO);
+        downloadExecutor = newStageExecutor("download", downloadThreads, stageHandoffTimeout);
+        persistenceExecutor = newStageExecutor("persistence", persistenceThreads, stageHandoffTimeout);
+    }
+
+    @PreDestroy
+    public void stop() {
+        metadataExecutor.shutdown();
+        downloadExecutor.shutdown();
+        persistenceExecutor.shutdown();
     }
 
     @Override
-    public AppDocument processDoc(Message telegramMessage) {
-        Document telegramDoc = telegramMessage.getDocument();
+    public CompletableFuture<AppDocument> processDoc(Message telegramMessage) {
+        return deferWhenStageIsFull(() -> fetchDoc(telegramMessage)
+                .thenApplyAsync(appDoc -> transactionTemplate.execute(status -> {
+                    binaryContentService.reference(appDoc.getBinaryContent());
+                    return appDocumentDAO.save(appDoc);
+                }), persistenceExecutor));
+    }
+
+    @Override
+    public CompletableFuture<AppPhoto> processPhoto(Message telegramMessage) {
+        return deferWhenStageIsFull(() -> fetchPhoto(telegramMessage)
+                .thenApplyAsync(appPhoto -> transactionTemplate.execute(status -> {
+                    binaryContentService.reference(appPhoto.getBinaryContent());
+                    return appPhotoDao.save(appPhoto);
+                }), persistenceExecutor));
+    }
 
-        String fileId = telegramDoc.getFileId();
-        ResponseEntity<String> response = getFilePath(fileId);
+    @Override
+    public CompletableFuture<AppDocument> fetchDoc(Message telegramMessage) {
+        Document telegramDoc = telegramMessage.getDocument();
 
-        if(response.getStatusCode() == HttpStatus.OK){
-            BinaryContent persistentBinaryContent = getPersistentBinaryContent(response);
-            AppDocument transientAppDoc = buildTransientAppDoc(telegramDoc, persistentBinaryContent);
+        var knownBinaryContent = appDocumentDAO
+                .findFirstByTelegramFileUniqueId(telegramDoc.getFileUniqueId())
+                .map(AppDocument::getBinaryContent)
+                .filter(binaryContent -> binaryContent.getChecksum() != null);
 
-            return appDocumentDAO.save(transientAppDoc);
-        } else{
-            throw new UploadFileException("Bad response from telegram service: " + response);
-        }
+        return deferWhenStageIsFull(() -> getPersistentBinaryContent(knownBinaryContent, telegramDoc.getFileId(),
+                telegramMessage.getFrom().getId(), telegramDoc.getFileSize())
+                .thenApply(persistentBinaryContent -> buildTransientAppDoc(telegramDoc, persistentBinaryContent)));
     }
 
     @Override
-    public AppPhoto processPhoto(Message telegramMessage) {
+    public CompletableFuture<AppPhoto> fetchPhoto(Message telegramMessage) {
         var photoSizeCount = telegramMessage.getPhoto().size();
         int photoIndex;
         if (photoSizeCount > 1) {
@@ -83,17 +159,25 @@ public class FileServiceImpl implements FileService {
         }
         PhotoSize telegramPhoto = telegramMessage.getPhoto().get(photoIndex);
 
-        String fileId = telegramPhoto.getFileId();
-        ResponseEntity<String> response = getFilePath(fileId);
+        var knownBinaryContent = appPhotoDao
+                .findFirstByTelegramFileUniqueId(telegramPhoto.getFileUniqueId())
+                .map(AppPhoto::getBinaryContent)
+                .filter(binaryContent -> binaryContent.getChecksum() != null);
 
-        if(response.getStatusCode() == HttpStatus.OK){
-            BinaryContent persistentBinaryContent = getPersistentBinaryContent(response);
-            AppPhoto transientAppPhoto = buildTransientAppPhoto(telegramPhoto, persistentBinaryContent);
+        var photoFileSize = telegramPhoto.getFileSize() != null ? telegramPhoto.getFileSize().longValue() : null;
+        return deferWhenStageIsFull(() -> getPersistentBinaryContent(knownBinaryContent, telegramPhoto.getFileId(),
+                telegramMessage.getFrom().getId(), photoFileSize)
+                .thenApply(persistentBinaryContent -> buildTransientAppPhoto(telegramPhoto, persistentBinaryContent)));
+    }
 
-            return appPhotoDao.save(transientAppPhoto);
-        } else{
-            throw new UploadFileException("Bad response from telegram service: " + response);
-        }
+    @Override
+    public CompletableFuture<Void> saveMediaGroup(List<AppDocument> appDocs, List<AppPhoto> appPhotos) {
+        return deferWhenStageIsFull(() -> CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            appDocs.forEach(appDoc -> binaryContentService.reference(appDoc.getBinaryContent()));
+            appPhotos.forEach(appPhoto -> binaryContentService.reference(appPhoto.getBinaryContent()));
+            appDocumentDAO.saveAll(appDocs);
+            appPhotoDao.saveAll(appPhotos);
+        }), persistenceExecutor));
     }
 
     @Override
@@ -104,66 +188,134 @@ public class FileServiceImpl implements FileService {
     }
 
 
-    private BinaryContent getPersistentBinaryContent(ResponseEntity<String> response) {
-        String filePath = getFilePath(response);
+    private CompletableFuture<BinaryContent> getPersistentBinaryContent(Optional<BinaryContent> knownBinaryContent,
+                                                                        String fileId, Long telegramUserId,
+                                                                        Long announcedFileSize) {
+        if (knownBinaryContent.isPresent()) {
+            return CompletableFuture.completedFuture(knownBinaryContent.get());
+        }
+        if (FetchMode.LAZY.equals(fetchMode)) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-        byte[] fileInByte = downloadFile(filePath);
+        var reservation = uploadAdmission.tryReserve(telegramUserId, announcedFileSize);
+        if (reservation.isEmpty()) {
+            return CompletableFuture.failedFuture(new UploadDeferredException(
+                    "Upload budget is exhausted, file " + fileId + " of user " + telegramUserId + " is deferred"));
+        }
 
-        BinaryContent transientBinaryContent = BinaryContent.builder()
-                .fileAsArrayOfBytes(fileInByte)
-                .build();
+        CompletableFuture<SpooledFile> download;
+        try {
+            download = CompletableFuture
+                    .supplyAsync(() -> telegramFileClient.getFilePath(fileId), metadataExecutor)
+                    .thenApplyAsync(this::downloadFile, downloadExecutor);
+        } catch (RejectedExecutionException e) {
+            uploadAdmission.release(reservation.get());
+            return CompletableFuture.failedFuture(e);
+        }
 
-        return binaryContentDAO.save(transientBinaryContent);
+        return download
+                .thenApplyAsync(this::persistBinaryContent, persistenceExecutor)
+                .whenComplete((binaryContent, e) -> {
+                    uploadAdmission.release(reservation.get());
+                    if (e != null) {
+                        download.thenAccept(spooledFile -> deleteSpoolFile(spooledFile.path));
+                    }
+                });
     }
 
-    private static String getFilePath(ResponseEntity<String> response) {
-        JSONObject jsonObject = new JSONObject(response.getBody());
+    private static <T> CompletableFuture<T> deferWhenStageIsFull(Supplier<CompletableFuture<T>> stages) {
+        CompletableFuture<T> future;
+        try {
+            future = stages.get();
+        } catch (RejectedExecutionException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        return future.handle((result, e) -> {
+            if (e == null) {
+                return CompletableFuture.completedFuture(result);
+            }
+            var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RejectedExecutionException) {
+                return CompletableFuture.<T>failedFuture(new UploadDeferredException(cause.getMessage()));
+            }
+            return CompletableFuture.<T>failedFuture(cause);
+        }).thenCompose(stage -> stage);
+    }
 
-        return String.valueOf(jsonObject
-                .getJSONObject("result")
-                .getString("file_path"));
+    private BinaryContent persistBinaryContent(SpooledFile spooledFile) {
+        try {
+            return binaryContentService.save(spooledFile.path, Files.size(spooledFile.path), spooledFile.checksum);
+        } catch (IOException e) {
+            throw new UploadFileException(e);
+        } finally {
+            deleteSpoolFile(spooledFile.path);
+        }
     }
 
+    private SpooledFile downloadFile(String filePath) {
+        Path spoolFile = createSpoolFile();
+        MessageDigest digest = sha256();
 
+        try (OutputStream os = new DigestOutputStream(Files.newOutputStream(spoolFile), digest)) {
+            telegramFileClient.download(filePath, os);
+        } catch (IOException | RuntimeException e) {
+            deleteSpoolFile(spoolFile);
+            throw e instanceof UploadFileException ? (UploadFileException) e : new UploadFileException(e);
+        }
 
-    private byte[] downloadFile(String filePath) {
-        String fileUri = fileStorageUri.replace("{token}", token)
-                .replace("{filePath}", filePath);
+        return new SpooledFile(spoolFile, String.format("%064x", new BigInteger(1, digest.digest())));
+    }
 
-        URL urlObj = null;
+    private ExecutorService newStageExecutor(String stage, int threads, Duration handoffTimeout) {
+        var executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(stageQueueCapacity),
+                new CustomizableThreadFactory("files-" + stage + "-"),
+                (task, stageExecutor) -> handOff(stage, task, stageExecutor, handoffTimeout));
+        return ExecutorServiceMetrics.monitor(meterRegistry, executor, "files." + stage);
+    }
 
+    private static void handOff(String stage, Runnable task, ThreadPoolExecutor executor, Duration timeout) {
         try {
-            urlObj = new URL(fileUri);
-        } catch (MalformedURLException e) {
-            throw new UploadFileException(e);
+            if (!executor.isShutdown() && !timeout.isZero()
+                    && executor.getQueue().offer(task, timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        throw new RejectedExecutionException("files." + stage + " stage is full");
+    }
 
-        try(InputStream is = urlObj.openStream()){
-            return is.readAllBytes();
-        } catch (IOException e) {
-            throw new UploadFileException(urlObj.toExternalForm(), e);
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
-
     }
 
-    private ResponseEntity<String> getFilePath(String fileId) {
-        RestTemplate restTemplate = new RestTemplate();
-        HttpHeaders headers = new HttpHeaders();
-        HttpEntity<String> request = new HttpEntity<>(headers);
+    private static Path createSpoolFile() {
+        try {
+            return Files.createTempFile("upload-", ".part");
+        } catch (IOException e) {
+            throw new UploadFileException(e);
+        }
+    }
 
-        return restTemplate.exchange(
-                fileInfoUri,
-                HttpMethod.GET,
-                request,
-                String.class,
-                token,
-                fileId
-        );
+    private static void deleteSpoolFile(Path spoolFile) {
+        try {
+            Files.deleteIfExists(spoolFile);
+        } catch (IOException e) {
+            log.error("Failed to delete spool file " + spoolFile, e);
+        }
     }
 
     private AppDocument buildTransientAppDoc(Document telegramDoc, BinaryContent persistentBinaryContent) {
         return AppDocument.builder()
                 .telegramFileId(telegramDoc.getFileId())
+                .telegramFileUniqueId(telegramDoc.getFileUniqueId())
                 .docName(telegramDoc.getFileName())
                 .binaryContent(persistentBinaryContent)
                 .mimeType(telegramDoc.getMimeType())
@@ -174,8 +326,19 @@ public class FileServiceImpl implements FileService {
     private AppPhoto buildTransientAppPhoto(PhotoSize telegramPhoto, BinaryContent persistentBinaryContent) {
         return AppPhoto.builder()
                 .telegramFileId(telegramPhoto.getFileId())
+                .telegramFileUniqueId(telegramPhoto.getFileUniqueId())
                 .binaryContent(persistentBinaryContent)
                 .fileSize(telegramPhoto.getFileSize())
                 .build();
     }
+
+    private static class SpooledFile {
+        private final Path path;
+        private final String checksum;
+
+        private SpooledFile(Path path, String checksum) {
+            this.path = path;
+            this.checksum = checksum;
+        }
+    }
 }
@@ -1,25 +1,32 @@
 package org.example.service.impl;
 
 import lombok.extern.log4j.Log4j;
-import org.example.dao.AppUserDAO;
-import org.example.dao.RawDataDAO;
+import org.example.dto.MediaGroupItem;
 import org.example.entity.AppDocument;
 import org.example.entity.AppPhoto;
 import org.example.entity.AppUser;
-import org.example.entity.RawData;
 import org.example.exceptions.UploadFileException;
+import org.example.service.AppUserCache;
 import org.example.service.AppUserService;
 import org.example.service.FileService;
 import org.example.service.MainService;
+import org.example.service.MediaGroupCollector;
+import org.example.service.ProcessedUpdateService;
 import org.example.service.ProducerService;
 import org.example.service.enums.LinkType;
 import org.example.service.enums.ServiceCommands;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.User;
 
 import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.example.entity.enums.UserState.BASIC_STATE;
 import static org.example.entity.enums.UserState.WAIT_FOR_EMAIL_STATE;
@@ -28,24 +35,25 @@ import static org.example.service.enums.ServiceCommands.*;
 @Service
 @Log4j
 public class MainServiceImpl implements MainService {
-    private final RawDataDAO rawDataDAO;
     private final ProducerService producerService;
-    private final AppUserDAO appUserDAO;
+    private final AppUserCache appUserCache;
     private final FileService fileService;
     private final AppUserService appUserService;
+    private final ProcessedUpdateService processedUpdateService;
+    private final MediaGroupCollector mediaGroupCollector;
 
-    public MainServiceImpl(RawDataDAO rawDataDAO, ProducerService producerService, AppUserDAO appUserDAO, FileService fileService, AppUserService appUserService) {
-        this.rawDataDAO = rawDataDAO;
+    public MainServiceImpl(ProducerService producerService, AppUserCache appUserCache, FileService fileService, AppUserService appUserService, ProcessedUpdateService processedUpdateService, MediaGroupCollector mediaGroupCollector) {
         this.producerService = producerService;
-        this.appUserDAO = appUserDAO;
+        this.appUserCache = appUserCache;
         this.fileService = fileService;
         this.appUserService = appUserService;
+        this.processedUpdateService = processedUpdateService;
+        this.mediaGroupCollector = mediaGroupCollector;
     }
 
     @Transactional
     @Override
     public void processTextMessage(Update update) {
-        saveRawData(update);
         var appUser = findOrSaveAppUser(update);
         var userState = appUser.getState();
         var text = update.getMessage().getText();
@@ -68,63 +76,217 @@ public class MainServiceImpl implements MainService {
     }
 
     @Override
-    public void processDocMessage(Update update) {
-        saveRawData(update);
-        var appUser = findOrSaveAppUser(update);
+    public CompletableFuture<Void> processDocMessage(Update update, Integer ackMessageId, boolean lastAttempt) {
         var chatId = update.getMessage().getChatId();
 
-        if(isNotAllowToSendContent(chatId, appUser)){
-            return;
+        var processedUpdate = processedUpdateService.find(update.getUpdateId());
+        if (processedUpdate.isPresent()) {
+            log.debug("NODE: Update " + update.getUpdateId() + " is already processed");
+            sendAnswer(docAnswer(processedUpdate.get().getEntityId()), chatId, ackMessageId);
+            return CompletableFuture.completedFuture(null);
         }
 
-        try {
-            AppDocument appDoc = fileService.processDoc(update.getMessage());
-            String link = fileService.generateLink(appDoc.getId(), LinkType.GET_DOC);
-            var answer = "Документ успешно загружен, вот ссылка: " + link;
-            sendAnswer(answer, chatId);
-        } catch (UploadFileException e){
-            log.error(e);
-            String error = "Загрузка файла не удалась :(";
-            sendAnswer(error, chatId);
+        var appUser = findOrSaveAppUser(update);
+        if(isNotAllowToSendContent(chatId, ackMessageId, appUser)){
+            return CompletableFuture.completedFuture(null);
         }
+        if (update.getMessage().getMediaGroupId() != null) {
+            return mediaGroupCollector.collect(update, ackMessageId, lastAttempt, this::processMediaGroup,
+                    () -> processDoc(update, ackMessageId, lastAttempt));
+        }
+        return processDoc(update, ackMessageId, lastAttempt);
+    }
+
+    private CompletableFuture<Void> processDoc(Update update, Integer ackMessageId, boolean lastAttempt) {
+        var chatId = update.getMessage().getChatId();
+        return fileService.processDoc(update.getMessage())
+                .thenAccept(appDoc -> {
+                    processedUpdateService.record(update.getUpdateId(), LinkType.GET_DOC, appDoc.getId());
+                    sendAnswer(docAnswer(appDoc.getId()), chatId, ackMessageId);
+                })
+                .exceptionally(e -> {
+                    handleUploadFailure(e, lastAttempt, "Загрузка файла не удалась :(", chatId, ackMessageId);
+                    return null;
+                });
     }
 
 
 
     @Override
-    public void processPhotoMessage(Update update) {
-        saveRawData(update);
+    public CompletableFuture<Void> processPhotoMessage(Update update, Integer ackMessageId, boolean lastAttempt) {
+        var chatId = update.getMessage().getChatId();
+
+        var processedUpdate = processedUpdateService.find(update.getUpdateId());
+        if (processedUpdate.isPresent()) {
+            log.debug("NODE: Update " + update.getUpdateId() + " is already processed");
+            sendAnswer(photoAnswer(processedUpdate.get().getEntityId()), chatId, ackMessageId);
+            return CompletableFuture.completedFuture(null);
+        }
+
         var appUser = findOrSaveAppUser(update);
+        if(isNotAllowToSendContent(chatId, ackMessageId, appUser)){
+            return CompletableFuture.completedFuture(null);
+        }
+        if (update.getMessage().getMediaGroupId() != null) {
+            return mediaGroupCollector.collect(update, ackMessageId, lastAttempt, this::processMediaGroup,
+                    () -> processPhoto(update, ackMessageId, lastAttempt));
+        }
+        return processPhoto(update, ackMessageId, lastAttempt);
+    }
+
+    private CompletableFuture<Void> processPhoto(Update update, Integer ackMessageId, boolean lastAttempt) {
         var chatId = update.getMessage().getChatId();
+        return fileService.processPhoto(update.getMessage())
+                .thenAccept(appPhoto -> {
+                    processedUpdateService.record(update.getUpdateId(), LinkType.GET_PHOTO, appPhoto.getId());
+                    sendAnswer(photoAnswer(appPhoto.getId()), chatId, ackMessageId);
+                })
+                .exceptionally(e -> {
+                    handleUploadFailure(e, lastAttempt, "Загрузка фото не удалась :(", chatId, ackMessageId);
+                    return null;
+                });
+    }
+
+    @Override
+    public void processUploadFailure(Update update, Integer ackMessageId) {
+        var message = update.getMessage();
+        var error = message.hasDocument() ? "Загрузка файла не удалась :(" : "Загрузка фото не удалась :(";
+        sendAnswer(error, message.getChatId(), ackMessageId);
+    }
+
+    private void processMediaGroup(List<MediaGroupItem> items) {
+        var fetches = new ArrayList<CompletableFuture<?>>();
+        for (var item : items) {
+            var message = item.getUpdate().getMessage();
+            fetches.add(message.hasDocument() ? fileService.fetchDoc(message) : fileService.fetchPhoto(message));
+        }
 
-        if(isNotAllowToSendContent(chatId, appUser)){
+        CompletableFuture.allOf(fetches.toArray(CompletableFuture[]::new))
+                .handle((result, e) -> null)
+                .thenRun(() -> saveMediaGroup(items, fetches));
+    }
+
+    private void saveMediaGroup(List<MediaGroupItem> items, List<CompletableFuture<?>> fetches) {
+        var answeredItems = new ArrayList<MediaGroupItem>();
+        var uploadedItems = new ArrayList<MediaGroupItem>();
+        var failures = new HashMap<MediaGroupItem, Throwable>();
+        var uploads = new ArrayList<Object>();
+        var appDocs = new ArrayList<AppDocument>();
+        var appPhotos = new ArrayList<AppPhoto>();
+
+        for (int i = 0; i < items.size(); i++) {
+            var item = items.get(i);
+            Object upload;
+            try {
+                upload = fetches.get(i).join();
+            } catch (CompletionException e) {
+                var cause = e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof UploadFileException && item.isLastAttempt()) {
+                    log.error(cause);
+                    answeredItems.add(item);
+                    failures.put(item, cause);
+                } else {
+                    item.getResult().completeExceptionally(cause);
+                }
+                continue;
+            }
+
+            answeredItems.add(item);
+            uploadedItems.add(item);
+            uploads.add(upload);
+            if (upload instanceof AppDocument) {
+                appDocs.add((AppDocument) upload);
+            } else {
+                appPhotos.add((AppPhoto) upload);
+            }
+        }
+        if (answeredItems.isEmpty()) {
             return;
         }
 
-        try{
-            AppPhoto appPhoto = fileService.processPhoto(update.getMessage());
-            String link = fileService.generateLink(appPhoto.getId(), LinkType.GET_PHOTO);
-            var answer = "Фото загружено! Вот ссылка: " + link;
-            sendAnswer(answer, chatId);
-        } catch (UploadFileException e){
-            log.error(e);
-            String error = "Загрузка фото не удалась :(";
-            sendAnswer(error, chatId);
+        fileService.saveMediaGroup(appDocs, appPhotos).whenComplete((result, e) -> {
+            if (e != null) {
+                answeredItems.forEach(item -> item.getResult().completeExceptionally(e));
+                return;
+            }
+            try {
+                var links = new ArrayList<String>();
+                for (int i = 0; i < uploads.size(); i++) {
+                    var updateId = uploadedItems.get(i).getUpdate().getUpdateId();
+                    var upload = uploads.get(i);
+                    if (upload instanceof AppDocument) {
+                        var docId = ((AppDocument) upload).getId();
+                        processedUpdateService.record(updateId, LinkType.GET_DOC, docId);
+                        links.add(fileService.generateLink(docId, LinkType.GET_DOC));
+                    } else {
+                        var photoId = ((AppPhoto) upload).getId();
+                        processedUpdateService.record(updateId, LinkType.GET_PHOTO, photoId);
+                        links.add(fileService.generateLink(photoId, LinkType.GET_PHOTO));
+                    }
+                }
+                sendMediaGroupAnswer(answeredItems, links, failures.size());
+                for (var item : answeredItems) {
+                    var failure = failures.get(item);
+                    if (failure == null) {
+                        item.getResult().complete(null);
+                    } else {
+                        item.getResult().completeExceptionally(failure);
+                    }
+                }
+            } catch (RuntimeException ex) {
+                answeredItems.forEach(item -> item.getResult().completeExceptionally(ex));
+            }
+        });
+    }
+
+    private void sendMediaGroupAnswer(List<MediaGroupItem> items, List<String> links, int failed) {
+        String output;
+        if (links.isEmpty()) {
+            output = "Загрузка альбома не удалась :(";
+        } else {
+            output = "Альбом загружен, вот ссылки:\n" + String.join("\n", links);
+            if (failed > 0) {
+                output += "\nНе удалось загрузить файлов: " + failed;
+            }
         }
 
+        // dispatcher does not ack album items, so the album is answered with a single message
+        var chatId = items.get(0).getUpdate().getMessage().getChatId();
+        sendAnswer(output, chatId, items.get(0).getAckMessageId());
+    }
 
+    private String docAnswer(Long docId) {
+        String link = fileService.generateLink(docId, LinkType.GET_DOC);
+        return "Документ успешно загружен, вот ссылка: " + link;
     }
 
+    private String photoAnswer(Long photoId) {
+        String link = fileService.generateLink(photoId, LinkType.GET_PHOTO);
+        return "Фото загружено! Вот ссылка: " + link;
+    }
 
-    private boolean isNotAllowToSendContent(Long chatId, AppUser appUser) {
+    // an upload failure is retried by the consumer; only the last attempt tells the user
+    private void handleUploadFailure(Throwable e, boolean lastAttempt, String error, Long chatId, Integer ackMessageId) {
+        var cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof UploadFileException) {
+            log.error(cause);
+            if (lastAttempt) {
+                sendAnswer(error, chatId, ackMessageId);
+            }
+        }
+        throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+    }
+
+
+    private boolean isNotAllowToSendContent(Long chatId, Integer ackMessageId, AppUser appUser) {
         var userState = appUser.getState();
         if(!appUser.isActive()){
             var error = "Зарегестрируйтесь!";
-            sendAnswer(error, chatId);
+            sendAnswer(error, chatId, ackMessageId);
             return true;
         } else if(!BASIC_STATE.equals(userState)){
             var error = "В данный момент вы используете какую то комнаду";
-            sendAnswer(error, chatId);
+            sendAnswer(error, chatId, ackMessageId);
             return true;
         }
         return false;
@@ -137,6 +299,19 @@ public class MainServiceImpl implements MainService {
 
     }
 
+    private void sendAnswer(String output, Long chatId, Integer ackMessageId) {
+        if(ackMessageId == null){
+            sendAnswer(output, chatId);
+            return;
+        }
+
+        EditMessageText editMessageText = new EditMessageText();
+        editMessageText.setChatId(chatId);
+        editMessageText.setMessageId(ackMessageId);
+        editMessageText.setText(output);
+        producerService.producerAnswer(editMessageText);
+    }
+
     private String processServiceCommand(AppUser appUser, String cmd) {
         var serviceCommand = ServiceCommands.fromValue(cmd);
 
@@ -160,7 +335,7 @@ public class MainServiceImpl implements MainService {
 
     private String cancelProcess(AppUser appUser) {
         appUser.setState(BASIC_STATE);
-        appUserDAO.save(appUser);
+        appUserCache.update(appUser);
 
         return "Команда отменена!";
     }
@@ -168,7 +343,7 @@ public class MainServiceImpl implements MainService {
     private AppUser findOrSaveAppUser(Update update){
         User telegramUser = update.getMessage().getFrom();
 
-        var optionalAppUser = appUserDAO.findByTelegramUserId(telegramUser.getId());
+        var optionalAppUser = appUserCache.findByTelegramUserId(telegramUser.getId());
         if(optionalAppUser.isEmpty()){
             AppUser transientAppUser = AppUser.builder()
                     .telegramUserId(telegramUser.getId())
@@ -178,17 +353,10 @@ public class MainServiceImpl implements MainService {
                     .isActive(false)
                     .state(BASIC_STATE)
                     .build();
-            return appUserDAO.save(transientAppUser);
+            return appUserCache.save(transientAppUser);
         }
         return optionalAppUser.get();
     }
 
-    private void saveRawData(Update update) {
-        RawData rawData = RawData.builder()
-                            .event(update)
-                            .build();
-        rawDataDAO.save(rawData);
-    }
-
 
 }
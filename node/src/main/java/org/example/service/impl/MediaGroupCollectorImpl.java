@@ -0,0 +1,135 @@
+package org.example.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j;
+import org.example.dto.MediaGroupItem;
+import org.example.service.MediaGroupCollector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+@Service
+@Log4j
+public class MediaGroupCollectorImpl implements MediaGroupCollector {
+    private final Map<String, MediaGroup> groups = new ConcurrentHashMap<>();
+    private final Cache<String, Boolean> flushedGroups;
+    private final DistributionSummary groupSizeSummary;
+    private final Counter lateItemCounter;
+
+    @Value("${node.media-group.window}")
+    private Duration window;
+
+    @Value("${node.media-group.max-items}")
+    private int maxItems;
+
+    private ScheduledExecutorService scheduler;
+
+    public MediaGroupCollectorImpl(MeterRegistry meterRegistry,
+                                   @Value("${node.media-group.flushed-retention}") Duration flushedRetention) {
+        this.flushedGroups = Caffeine.newBuilder()
+                .expireAfterWrite(flushedRetention)
+                .build();
+        this.groupSizeSummary = meterRegistry.summary("media_group.items");
+        this.lateItemCounter = meterRegistry.counter("media_group.late_items");
+        Gauge.builder("media_group.pending", groups, Map::size)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("media-group-"));
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public CompletableFuture<Void> collect(Update update, Integer ackMessageId, boolean lastAttempt,
+                                           Consumer<List<MediaGroupItem>> groupHandler,
+                                           Supplier<CompletableFuture<Void>> lateItemHandler) {
+        var mediaGroupId = update.getMessage().getMediaGroupId();
+        var item = new MediaGroupItem(update, ackMessageId, lastAttempt);
+        var state = new boolean[3];
+        var group = groups.compute(mediaGroupId, (key, mediaGroup) -> {
+            if (mediaGroup == null && flushedGroups.getIfPresent(key) != null) {
+                state[2] = true;
+                return null;
+            }
+            if (mediaGroup == null) {
+                mediaGroup = new MediaGroup(groupHandler);
+                state[0] = true;
+            }
+            mediaGroup.items.add(item);
+            state[1] = mediaGroup.items.size() >= maxItems;
+            return mediaGroup;
+        });
+
+        // a retried or redelivered item of an album that was already answered is answered on its own
+        if (state[2]) {
+            log.debug("NODE: Media group " + mediaGroupId + " is already answered, update "
+                    + update.getUpdateId() + " is processed as a single file");
+            lateItemCounter.increment();
+            return lateItemHandler.get();
+        }
+        if (state[1]) {
+            flush(mediaGroupId, group);
+        } else if (state[0]) {
+            scheduler.schedule(() -> flush(mediaGroupId, group), window.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return item.getResult();
+    }
+
+    private void flush(String mediaGroupId, MediaGroup group) {
+        var removed = new boolean[1];
+        groups.computeIfPresent(mediaGroupId, (key, mediaGroup) -> {
+            if (mediaGroup != group) {
+                return mediaGroup;
+            }
+            flushedGroups.put(key, Boolean.TRUE);
+            removed[0] = true;
+            return null;
+        });
+        if (!removed[0]) {
+            return;
+        }
+
+        groupSizeSummary.record(group.items.size());
+        try {
+            group.handler.accept(group.items);
+        } catch (RuntimeException e) {
+            log.error("Failed to process media group " + mediaGroupId, e);
+            group.items.forEach(item -> item.getResult().completeExceptionally(e));
+        }
+    }
+
+    private static class MediaGroup {
+        private final Consumer<List<MediaGroupItem>> handler;
+        private final List<MediaGroupItem> items = new ArrayList<>();
+
+        private MediaGroup(Consumer<List<MediaGroupItem>> handler) {
+            this.handler = handler;
+        }
+    }
+}
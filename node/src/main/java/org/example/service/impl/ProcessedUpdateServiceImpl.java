@@ -0,0 +1,78 @@
+package org.example.service.impl;
+
+import lombok.extern.log4j.Log4j;
+import org.example.dao.ProcessedUpdateDAO;
+import org.example.entity.ProcessedUpdate;
+import org.example.service.ProcessedUpdateService;
+import org.example.service.enums.LinkType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Log4j
+public class ProcessedUpdateServiceImpl implements ProcessedUpdateService {
+    private final ProcessedUpdateDAO processedUpdateDAO;
+
+    @Value("${node.processed-updates.retention}")
+    private Duration retention;
+
+    private ScheduledExecutorService sweeper;
+
+    public ProcessedUpdateServiceImpl(ProcessedUpdateDAO processedUpdateDAO) {
+        this.processedUpdateDAO = processedUpdateDAO;
+    }
+
+    @PostConstruct
+    public void start() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("processed-updates-"));
+        sweeper.scheduleWithFixedDelay(this::deleteExpired, 1, 10, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdownNow();
+    }
+
+    @Override
+    public Optional<ProcessedUpdate> find(Integer updateId) {
+        if (updateId == null) {
+            return Optional.empty();
+        }
+        return processedUpdateDAO.findById(updateId.longValue());
+    }
+
+    @Override
+    public void record(Integer updateId, LinkType linkType, Long entityId) {
+        if (updateId == null) {
+            return;
+        }
+
+        var processedUpdate = ProcessedUpdate.builder()
+                .updateId(updateId.longValue())
+                .linkType(linkType)
+                .entityId(entityId)
+                .build();
+        processedUpdateDAO.save(processedUpdate);
+    }
+
+    private void deleteExpired() {
+        try {
+            var deleted = processedUpdateDAO.deleteProcessedBefore(LocalDateTime.now().minus(retention));
+            if (deleted > 0) {
+                log.debug("Deleted expired processed updates: " + deleted);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to delete expired processed updates", e);
+        }
+    }
+}
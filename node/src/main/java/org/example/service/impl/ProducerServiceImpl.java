@@ -1,10 +1,12 @@
 package org.example.service.impl;
 
 import org.example.service.ProducerService;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Value;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 
 
 
@@ -15,6 +17,9 @@ public class ProducerServiceImpl implements ProducerService {
     @Value("${spring.rabbitmq.queues.answer-message}")
     private String answerMessageQueue;
 
+    @Value("${spring.rabbitmq.exchanges.deferred-upload}")
+    private String deferredUploadExchange;
+
     public ProducerServiceImpl(RabbitTemplate rabbitTemplate) {
         this.rabbitTemplate = rabbitTemplate;
     }
@@ -24,4 +29,14 @@ public class ProducerServiceImpl implements ProducerService {
     public void producerAnswer(SendMessage sendMessage) {
         rabbitTemplate.convertAndSend(answerMessageQueue, sendMessage);
     }
+
+    @Override
+    public void producerAnswer(EditMessageText editMessageText) {
+        rabbitTemplate.convertAndSend(answerMessageQueue, editMessageText);
+    }
+
+    @Override
+    public void producerDeferred(Message message) {
+        rabbitTemplate.send(deferredUploadExchange, message.getMessageProperties().getConsumerQueue(), message);
+    }
 }
@@ -0,0 +1,261 @@
+package org.example.service.impl;
+
+import lombok.extern.log4j.Log4j;
+import org.example.service.RawDataMaintenance;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+@Log4j
+public class RawDataMaintenanceImpl implements RawDataMaintenance {
+    private static final String PARTITION_PREFIX = "raw_data_";
+    private static final String LEGACY_TABLE = "raw_data_legacy";
+    private static final String DEFAULT_PARTITION = "raw_data_default";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final long MAINTENANCE_LOCK = 0x7261775f64617461L;
+
+    private static final String SELECT_RELKIND =
+            "select c.relkind from pg_class c join pg_namespace n on n.oid = c.relnamespace " +
+            "where n.nspname = current_schema() and c.relname = ?";
+    private static final String CREATE_PARENT =
+            "create table if not exists raw_data (" +
+            "id bigserial not null, " +
+            "created_at timestamptz not null default now(), " +
+            "update_id bigint, " +
+            "event jsonb, " +
+            "primary key (id, created_at)" +
+            ") partition by range (created_at)";
+    private static final String CREATE_UPDATE_ID_INDEX =
+            "create index if not exists raw_data_update_id_idx on raw_data (update_id)";
+    private static final String CREATE_PARTITION =
+            "create table if not exists %s partition of raw_data for values from ('%s 00:00:00+00') to ('%s 00:00:00+00')";
+    private static final String CREATE_DEFAULT_PARTITION =
+            "create table if not exists " + DEFAULT_PARTITION + " partition of raw_data default";
+    private static final String SELECT_DEFAULT_DAYS =
+            "select distinct (created_at at time zone 'UTC')::date::text from " + DEFAULT_PARTITION;
+    private static final String SELECT_DEFAULT_HAS_DAY =
+            "select exists (select 1 from " + DEFAULT_PARTITION + " " +
+            "where created_at >= ?::timestamp at time zone 'UTC' and created_at < ?::timestamp at time zone 'UTC')";
+    private static final String MOVE_DEFAULT_ROWS =
+            "with moved as (delete from " + DEFAULT_PARTITION + " " +
+            "where created_at >= ?::timestamp at time zone 'UTC' and created_at < ?::timestamp at time zone 'UTC' returning *) " +
+            "insert into raw_data select * from moved";
+    private static final String SELECT_PARTITIONS =
+            "select c.relname from pg_inherits i " +
+            "join pg_class c on c.oid = i.inhrelid " +
+            "join pg_class p on p.oid = i.inhparent " +
+            "where p.relname = 'raw_data'";
+    private static final String SELECT_ARCHIVE_ROWS =
+            "select json_build_object('id', id, 'update_id', update_id, 'created_at', created_at, 'event', event)::text " +
+            "from %s";
+    private static final String SELECT_LEGACY_ARCHIVE_ROWS =
+            "select json_build_object('id', id, 'event', event)::text from " + LEGACY_TABLE;
+
+    @Value("${node.raw-data.partition.premake-days}")
+    private int premakeDays;
+
+    @Value("${node.raw-data.partition.retention-days}")
+    private int retentionDays;
+
+    @Value("${node.raw-data.partition.archive-dir}")
+    private String archiveDir;
+
+    @Value("${node.raw-data.partition.maintenance-interval}")
+    private Duration maintenanceInterval;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private ScheduledExecutorService scheduler;
+
+    public RawDataMaintenanceImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(500);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.queryForObject("select pg_advisory_xact_lock(?)", Object.class, MAINTENANCE_LOCK);
+            createParent();
+            createPartitions();
+        });
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("raw-data-maintenance-"));
+        scheduler.scheduleWithFixedDelay(this::maintainQuietly,
+                maintenanceInterval.toMillis(), maintenanceInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public void maintain() {
+        transactionTemplate.executeWithoutResult(status -> {
+            var locked = jdbcTemplate.queryForObject("select pg_try_advisory_xact_lock(?)", Boolean.class,
+                    MAINTENANCE_LOCK);
+            if (!Boolean.TRUE.equals(locked)) {
+                log.debug("Raw data maintenance is running on another node");
+                return;
+            }
+
+            createPartitions();
+            archiveExpiredPartitions();
+        });
+    }
+
+    private void maintainQuietly() {
+        try {
+            maintain();
+        } catch (RuntimeException e) {
+            log.error("Raw data maintenance failed", e);
+        }
+    }
+
+    private void createParent() {
+        var relkind = jdbcTemplate.queryForList(SELECT_RELKIND, String.class, "raw_data");
+        if (!relkind.isEmpty() && "r".equals(relkind.get(0))) {
+            log.info("Moving unpartitioned raw_data to " + LEGACY_TABLE);
+            jdbcTemplate.execute("alter table raw_data rename to " + LEGACY_TABLE);
+            jdbcTemplate.execute("alter sequence if exists raw_data_id_seq rename to " + LEGACY_TABLE + "_id_seq");
+        }
+
+        jdbcTemplate.execute(CREATE_PARENT);
+        jdbcTemplate.execute(CREATE_UPDATE_ID_INDEX);
+        jdbcTemplate.execute(CREATE_DEFAULT_PARTITION);
+    }
+
+    // rows land in raw_data_default only when a day was not premade, e.g. maintenance was down for premake-days
+    private void createPartitions() {
+        var today = LocalDate.now(ZoneOffset.UTC);
+        for (int day = 0; day <= premakeDays; day++) {
+            createPartition(today.plusDays(day));
+        }
+        for (var day : jdbcTemplate.queryForList(SELECT_DEFAULT_DAYS, String.class)) {
+            createPartition(LocalDate.parse(day));
+        }
+    }
+
+    private void createPartition(LocalDate date) {
+        var partition = partitionOf(date);
+        if (!jdbcTemplate.queryForList(SELECT_RELKIND, String.class, partition).isEmpty()) {
+            return;
+        }
+
+        var createPartition = String.format(CREATE_PARTITION, partition, date, date.plusDays(1));
+        var inDefault = jdbcTemplate.queryForObject(SELECT_DEFAULT_HAS_DAY, Boolean.class,
+                date.toString(), date.plusDays(1).toString());
+        if (!Boolean.TRUE.equals(inDefault)) {
+            jdbcTemplate.execute(createPartition);
+            return;
+        }
+
+        jdbcTemplate.execute("alter table raw_data detach partition " + DEFAULT_PARTITION);
+        jdbcTemplate.execute(createPartition);
+        var moved = jdbcTemplate.update(MOVE_DEFAULT_ROWS, date.toString(), date.plusDays(1).toString());
+        jdbcTemplate.execute("alter table raw_data attach partition " + DEFAULT_PARTITION + " default");
+        log.warn("Moved " + moved + " raw updates from " + DEFAULT_PARTITION + " to " + partition);
+    }
+
+    private void archiveExpiredPartitions() {
+        var expiredBefore = LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays);
+
+        for (var partition : jdbcTemplate.queryForList(SELECT_PARTITIONS, String.class)) {
+            if (DEFAULT_PARTITION.equals(partition)) {
+                continue;
+            }
+
+            LocalDate date;
+            try {
+                date = LocalDate.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+            } catch (RuntimeException e) {
+                log.error("Skipping raw data partition with unexpected name: " + partition);
+                continue;
+            }
+
+            if (date.isBefore(expiredBefore)) {
+                archive(partition, String.format(SELECT_ARCHIVE_ROWS, partition));
+            }
+        }
+
+        if (!jdbcTemplate.queryForList(SELECT_RELKIND, String.class, LEGACY_TABLE).isEmpty()) {
+            archive(LEGACY_TABLE, SELECT_LEGACY_ARCHIVE_ROWS);
+        }
+    }
+
+    private void archive(String table, String selectRows) {
+        var directory = Paths.get(archiveDir);
+        var archiveFile = directory.resolve(table + ".jsonl.gz");
+        Path partFile = null;
+        long rows;
+
+        try {
+            Files.createDirectories(directory);
+            partFile = Files.createTempFile(directory, table, ".part");
+            try (var writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(partFile)), StandardCharsets.UTF_8))) {
+                var counter = new long[1];
+                jdbcTemplate.query(selectRows, resultSet -> {
+                    try {
+                        writer.write(resultSet.getString(1));
+                        writer.newLine();
+                        counter[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                rows = counter[0];
+            }
+            Files.move(partFile, archiveFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | UncheckedIOException e) {
+            deleteQuietly(partFile);
+            log.error("Failed to archive " + table + ", keeping it", e);
+            return;
+        }
+
+        jdbcTemplate.execute("drop table " + table);
+        log.info("Archived " + rows + " raw updates from " + table + " to " + archiveFile);
+    }
+
+    private static String partitionOf(LocalDate date) {
+        return PARTITION_PREFIX + date.format(PARTITION_SUFFIX);
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.error("Failed to delete " + file, e);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.example.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j;
+import org.example.service.RawDataWriter;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@Log4j
+public class RawDataWriterImpl implements RawDataWriter {
+    private static final String COPY_RAW_DATA = "COPY raw_data (update_id, event) FROM STDIN WITH (FORMAT csv)";
+
+    @Value("${node.raw-data.enabled}")
+    private boolean enabled;
+
+    @Value("${node.raw-data.sample-rate}")
+    private double sampleRate;
+
+    @Value("${node.raw-data.batch-size}")
+    private int batchSize;
+
+    @Value("${node.raw-data.flush-interval-ms}")
+    private long flushIntervalMs;
+
+    private final DataSource dataSource;
+    private final BlockingQueue<RawEntry> queue;
+    private final Timer flushTimer;
+    private final Counter droppedCounter;
+    private final Counter failedCounter;
+
+    private Thread flusherThread;
+    private volatile boolean running;
+
+    public RawDataWriterImpl(DataSource dataSource, MeterRegistry meterRegistry,
+                             @Value("${node.raw-data.queue-capacity}") int queueCapacity) {
+        this.dataSource = dataSource;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flushTimer = meterRegistry.timer("raw_data.flush");
+        this.droppedCounter = meterRegistry.counter("raw_data.dropped");
+        this.failedCounter = meterRegistry.counter("raw_data.failed");
+        Gauge.builder("raw_data.queue.depth", queue, BlockingQueue::size)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        running = true;
+        flusherThread = new CustomizableThreadFactory("raw-data-").newThread(this::flushLoop);
+        flusherThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusherThread == null) {
+            return;
+        }
+
+        running = false;
+        flusherThread.join(flushIntervalMs + 10000);
+    }
+
+    @Override
+    public void write(Integer updateId, byte[] rawUpdate) {
+        if (!enabled || (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)) {
+            return;
+        }
+
+        if (!queue.offer(new RawEntry(updateId, rawUpdate))) {
+            droppedCounter.increment();
+        }
+    }
+
+    private void flushLoop() {
+        var batch = new ArrayList<RawEntry>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                var first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queue.drainTo(batch);
+                running = false;
+            }
+
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<RawEntry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        var csv = new ByteArrayOutputStream();
+        for (var entry : batch) {
+            if (entry.updateId != null) {
+                csv.writeBytes(entry.updateId.toString().getBytes(StandardCharsets.US_ASCII));
+            }
+            csv.write(',');
+            csv.write('"');
+            for (byte b : entry.body) {
+                if (b == '"') {
+                    csv.write('"');
+                }
+                csv.write(b);
+            }
+            csv.write('"');
+            csv.write('\n');
+        }
+
+        var startedAt = System.nanoTime();
+        try (var connection = dataSource.getConnection()) {
+            var copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            copyManager.copyIn(COPY_RAW_DATA, new ByteArrayInputStream(csv.toByteArray()));
+        } catch (SQLException | IOException e) {
+            failedCounter.increment(batch.size());
+            log.error("Failed to copy " + batch.size() + " raw updates", e);
+        } finally {
+            flushTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static class RawEntry {
+        private final Integer updateId;
+        private final byte[] body;
+
+        private RawEntry(Integer updateId, byte[] body) {
+            this.updateId = updateId;
+            this.body = body;
+        }
+    }
+}
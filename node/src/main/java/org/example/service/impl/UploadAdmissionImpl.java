@@ -0,0 +1,81 @@
+package org.example.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.dto.UploadReservation;
+import org.example.service.UploadAdmission;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+public class UploadAdmissionImpl implements UploadAdmission {
+    private final long globalBudget;
+    private final long userBudget;
+    private final long unknownFileSize;
+
+    private final Map<Long, Long> reservedByUser = new HashMap<>();
+    private long reserved;
+
+    private final Counter globalDeferredCounter;
+    private final Counter userDeferredCounter;
+
+    public UploadAdmissionImpl(MeterRegistry meterRegistry,
+                               @Value("${node.files.admission.global-budget}") DataSize globalBudget,
+                               @Value("${node.files.admission.user-budget}") DataSize userBudget,
+                               @Value("${node.files.admission.unknown-file-size}") DataSize unknownFileSize) {
+        this.globalBudget = globalBudget.toBytes();
+        this.userBudget = userBudget.toBytes();
+        this.unknownFileSize = unknownFileSize.toBytes();
+        this.globalDeferredCounter = meterRegistry.counter("files.admission.deferred", "budget", "global");
+        this.userDeferredCounter = meterRegistry.counter("files.admission.deferred", "budget", "user");
+        Gauge.builder("files.admission.reserved.bytes", this, UploadAdmissionImpl::reservedBytes)
+                .register(meterRegistry);
+        Gauge.builder("files.admission.budget.bytes", () -> this.globalBudget)
+                .register(meterRegistry);
+        Gauge.builder("files.admission.users", this, UploadAdmissionImpl::reservingUsers)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public synchronized Optional<UploadReservation> tryReserve(Long telegramUserId, Long announcedFileSize) {
+        long bytes = announcedFileSize != null && announcedFileSize > 0 ? announcedFileSize : unknownFileSize;
+        long reservedByThisUser = reservedByUser.getOrDefault(telegramUserId, 0L);
+
+        // an oversized file is still admitted alone, otherwise it would be deferred forever
+        if (reserved > 0 && reserved + bytes > globalBudget) {
+            globalDeferredCounter.increment();
+            return Optional.empty();
+        }
+        if (reservedByThisUser > 0 && reservedByThisUser + bytes > userBudget) {
+            userDeferredCounter.increment();
+            return Optional.empty();
+        }
+
+        reserved += bytes;
+        reservedByUser.put(telegramUserId, reservedByThisUser + bytes);
+        return Optional.of(new UploadReservation(telegramUserId, bytes));
+    }
+
+    @Override
+    public synchronized void release(UploadReservation reservation) {
+        reserved -= reservation.getBytes();
+        reservedByUser.computeIfPresent(reservation.getTelegramUserId(), (userId, bytes) -> {
+            long left = bytes - reservation.getBytes();
+            return left > 0 ? left : null;
+        });
+    }
+
+    private synchronized double reservedBytes() {
+        return reserved;
+    }
+
+    private synchronized double reservingUsers() {
+        return reservedByUser.size();
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j;
+import org.example.configuration.RabbitConfiguration;
+import org.example.service.UploadRetry;
+import org.example.utils.UpdateHeaders;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+@Log4j
+public class UploadRetryImpl implements UploadRetry {
+    private final RabbitTemplate rabbitTemplate;
+    private final RabbitConfiguration rabbitConfiguration;
+    private final List<Counter> retryCounters = new ArrayList<>();
+    private final Counter parkedCounter;
+
+    public UploadRetryImpl(RabbitTemplate rabbitTemplate, RabbitConfiguration rabbitConfiguration,
+                           MeterRegistry meterRegistry) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.rabbitConfiguration = rabbitConfiguration;
+        for (int tier = 0; tier < rabbitConfiguration.uploadRetryTiers(); tier++) {
+            retryCounters.add(meterRegistry.counter("files.retry.scheduled",
+                    "tier", rabbitConfiguration.uploadRetryExchangeOf(tier)));
+        }
+        this.parkedCounter = meterRegistry.counter("files.retry.parked");
+    }
+
+    @Override
+    public boolean isLastAttempt(Message message) {
+        return attemptOf(message) >= rabbitConfiguration.uploadRetryTiers();
+    }
+
+    @Override
+    public void retry(Message message) {
+        var properties = message.getMessageProperties();
+        var tier = attemptOf(message);
+        properties.setHeader(UpdateHeaders.UPLOAD_ATTEMPT, tier + 1);
+
+        rabbitTemplate.send(rabbitConfiguration.uploadRetryExchangeOf(tier), properties.getConsumerQueue(), message);
+        retryCounters.get(tier).increment();
+    }
+
+    @Override
+    public void park(Message message) {
+        var properties = message.getMessageProperties();
+        properties.setHeader(UpdateHeaders.ORIGINAL_QUEUE, properties.getConsumerQueue());
+
+        rabbitTemplate.send("", rabbitConfiguration.uploadParkingQueue(), message);
+        parkedCounter.increment();
+        log.error("Delivery from " + properties.getConsumerQueue() + " is parked after "
+                + attemptOf(message) + " upload retries");
+    }
+
+    private static int attemptOf(Message message) {
+        Object attempt = message.getMessageProperties().getHeader(UpdateHeaders.UPLOAD_ATTEMPT);
+        return attempt instanceof Number ? ((Number) attempt).intValue() : 0;
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.service.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.service.UserMailboxes;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+@Service
+public class UserMailboxesImpl implements UserMailboxes {
+    private final MeterRegistry meterRegistry;
+    private final Timer waitTimer;
+    private final Timer executionTimer;
+
+    @Value("${node.mailboxes.stripes}")
+    private int stripes;
+
+    private ThreadPoolExecutor[] mailboxes;
+
+    public UserMailboxesImpl(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.waitTimer = meterRegistry.timer("node.mailbox.wait");
+        this.executionTimer = meterRegistry.timer("node.mailbox.execution");
+    }
+
+    @PostConstruct
+    public void start() {
+        var threadFactory = new CustomizableThreadFactory("mailbox-");
+        mailboxes = new ThreadPoolExecutor[stripes];
+        for (int i = 0; i < stripes; i++) {
+            mailboxes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), threadFactory);
+        }
+
+        Gauge.builder("node.mailbox.depth", this, UserMailboxesImpl::totalDepth)
+                .register(meterRegistry);
+        Gauge.builder("node.mailbox.depth.max", this, UserMailboxesImpl::maxDepth)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (var mailbox : mailboxes) {
+            mailbox.shutdown();
+        }
+        for (var mailbox : mailboxes) {
+            mailbox.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<T> submit(Long telegramUserId, Supplier<T> task) {
+        var submittedAt = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> {
+            waitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+            return executionTimer.record(task);
+        }, mailboxOf(telegramUserId));
+    }
+
+    private ThreadPoolExecutor mailboxOf(Long telegramUserId) {
+        var hash = telegramUserId != null ? Long.hashCode(telegramUserId) : 0;
+        return mailboxes[Math.floorMod(hash ^ (hash >>> 16), stripes)];
+    }
+
+    private double totalDepth() {
+        long depth = 0;
+        for (var mailbox : mailboxes) {
+            depth += mailbox.getQueue().size();
+        }
+        return depth;
+    }
+
+    private double maxDepth() {
+        int depth = 0;
+        for (var mailbox : mailboxes) {
+            depth = Math.max(depth, mailbox.getQueue().size());
+        }
+        return depth;
+    }
+}
@@ -1,6 +1,9 @@
 package org.example.configuration;
 
 import org.example.utils.CryptoTool;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -11,8 +14,21 @@ public class RestServiceConfiguration {
     @Value("${salt}")
     private String salt;
 
+    @Value("${spring.rabbitmq.exchanges.app-user-invalidation}")
+    private String appUserInvalidationExchange;
+
     @Bean
     public CryptoTool getCryptoTool(){
         return new CryptoTool(salt);
     };
+
+    @Bean
+    public MessageConverter jsonMessageConvertor(){
+        return new Jackson2JsonMessageConverter();
+    }
+
+    @Bean
+    public FanoutExchange appUserInvalidationExchange() {
+        return new FanoutExchange(appUserInvalidationExchange);
+    }
 }
@@ -1,6 +1,9 @@
 package org.example.controller;
 
 import lombok.extern.log4j.Log4j;
+import org.example.entity.BinaryContent;
+import org.example.exceptions.UploadFileException;
+import org.example.service.BinaryContentService;
 import org.example.service.FileService;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -18,9 +21,11 @@ import java.io.IOException;
 public class FileController {
 
     private final FileService fileService;
+    private final BinaryContentService binaryContentService;
 
-    public FileController(FileService fileService) {
+    public FileController(FileService fileService, BinaryContentService binaryContentService) {
         this.fileService = fileService;
+        this.binaryContentService = binaryContentService;
     }
 
     @RequestMapping(method = RequestMethod.GET, value = "/get-doc")
@@ -33,15 +38,22 @@ public class FileController {
             return;
         }
 
+        BinaryContent binaryContent;
+        try {
+            binaryContent = fileService.getBinaryContent(doc);
+        } catch (UploadFileException e) {
+            log.error(e);
+            response.setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+            return;
+        }
+
         response.setContentType(MediaType.parseMediaType(doc.getMimeType()).toString());
         response.setHeader("Content-disposition", "attachment; filename=" + doc.getDocName());
         response.setStatus(HttpServletResponse.SC_OK);
 
-        var binaryContent = doc.getBinaryContent();
-
         try {
             var out = response.getOutputStream();
-            out.write(binaryContent.getFileAsArrayOfBytes());
+            binaryContentService.transferTo(binaryContent, out);
             out.close();
         } catch (IOException e) {
             log.error(e);
@@ -59,15 +71,22 @@ public class FileController {
             return;
         }
 
+        BinaryContent binaryContent;
+        try {
+            binaryContent = fileService.getBinaryContent(photo);
+        } catch (UploadFileException e) {
+            log.error(e);
+            response.setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+            return;
+        }
+
         response.setContentType(MediaType.IMAGE_JPEG.toString());
         response.setHeader("Content-disposition", "attachment;");
         response.setStatus(HttpServletResponse.SC_OK);
 
-        var binaryContent = photo.getBinaryContent();
-
         try {
             var out = response.getOutputStream();
-            out.write(binaryContent.getFileAsArrayOfBytes());
+            binaryContentService.transferTo(binaryContent, out);
             out.close();
         } catch (IOException e) {
             log.error(e);
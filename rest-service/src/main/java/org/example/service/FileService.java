@@ -8,4 +8,6 @@ import org.springframework.core.io.FileSystemResource;
 public interface FileService {
     AppDocument getDocument(String id);
     AppPhoto getPhoto(String id);
+    BinaryContent getBinaryContent(AppDocument appDocument);
+    BinaryContent getBinaryContent(AppPhoto appPhoto);
 }
@@ -1,5 +1,7 @@
 package org.example.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.log4j.Log4j;
 import org.apache.commons.io.FileUtils;
 import org.example.dao.AppDocumentDAO;
@@ -7,13 +9,31 @@ import org.example.dao.AppPhotoDao;
 import org.example.entity.AppDocument;
 import org.example.entity.AppPhoto;
 import org.example.entity.BinaryContent;
+import org.example.exceptions.UploadFileException;
+import org.example.service.BinaryContentService;
 import org.example.service.FileService;
+import org.example.service.TelegramFileClient;
 import org.example.utils.CryptoTool;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 @Service
 @Log4j
@@ -21,11 +41,26 @@ public class FileServiceImpl implements FileService {
     private final AppDocumentDAO appDocumentDAO;
     private final AppPhotoDao appPhotoDao;
     private final CryptoTool cryptoTool;
+    private final TelegramFileClient telegramFileClient;
+    private final BinaryContentService binaryContentService;
+    private final Cache<String, String> filePaths;
+    private final ConcurrentMap<String, CompletableFuture<BinaryContent>> fetches = new ConcurrentHashMap<>();
+    private final TransactionTemplate transactionTemplate;
 
-    public FileServiceImpl(AppDocumentDAO appDocumentDAO, AppPhotoDao appPhotoDao, CryptoTool cryptoTool) {
+    public FileServiceImpl(AppDocumentDAO appDocumentDAO, AppPhotoDao appPhotoDao, CryptoTool cryptoTool,
+                           TelegramFileClient telegramFileClient, BinaryContentService binaryContentService,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${lazy-fetch.file-path-ttl}") Duration filePathTtl) {
         this.appDocumentDAO = appDocumentDAO;
         this.appPhotoDao = appPhotoDao;
         this.cryptoTool = cryptoTool;
+        this.telegramFileClient = telegramFileClient;
+        this.binaryContentService = binaryContentService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.filePaths = Caffeine.newBuilder()
+                .expireAfterWrite(filePathTtl)
+                .maximumSize(10000)
+                .build();
     }
 
     @Override
@@ -50,4 +85,103 @@ public class FileServiceImpl implements FileService {
         return appPhotoDao.findById(id).orElse(null);
     }
 
+    @Override
+    public BinaryContent getBinaryContent(AppDocument appDocument) {
+        if (appDocument.getBinaryContent() != null) {
+            return appDocument.getBinaryContent();
+        }
+
+        return fetchOnce("doc:" + appDocument.getId(), () -> {
+            var current = appDocumentDAO.findById(appDocument.getId()).orElse(appDocument);
+            if (current.getBinaryContent() != null) {
+                return current.getBinaryContent();
+            }
+
+            var binaryContent = fetch(current.getTelegramFileId());
+            return transactionTemplate.execute(status -> {
+                if (appDocumentDAO.attachBinaryContent(current.getId(), binaryContent) == 0) {
+                    return appDocumentDAO.findById(current.getId()).map(AppDocument::getBinaryContent).orElse(null);
+                }
+                binaryContentService.reference(binaryContent);
+                return binaryContent;
+            });
+        });
+    }
+
+    @Override
+    public BinaryContent getBinaryContent(AppPhoto appPhoto) {
+        if (appPhoto.getBinaryContent() != null) {
+            return appPhoto.getBinaryContent();
+        }
+
+        return fetchOnce("photo:" + appPhoto.getId(), () -> {
+            var current = appPhotoDao.findById(appPhoto.getId()).orElse(appPhoto);
+            if (current.getBinaryContent() != null) {
+                return current.getBinaryContent();
+            }
+
+            var binaryContent = fetch(current.getTelegramFileId());
+            return transactionTemplate.execute(status -> {
+                if (appPhotoDao.attachBinaryContent(current.getId(), binaryContent) == 0) {
+                    return appPhotoDao.findById(current.getId()).map(AppPhoto::getBinaryContent).orElse(null);
+                }
+                binaryContentService.reference(binaryContent);
+                return binaryContent;
+            });
+        });
+    }
+
+    private BinaryContent fetchOnce(String key, Supplier<BinaryContent> fetching) {
+        var future = new CompletableFuture<BinaryContent>();
+        var running = fetches.putIfAbsent(key, future);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            var binaryContent = fetching.get();
+            future.complete(binaryContent);
+            return binaryContent;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            fetches.remove(key, future);
+        }
+    }
+
+    private BinaryContent fetch(String telegramFileId) {
+        var filePath = filePaths.get(telegramFileId, telegramFileClient::getFilePath);
+        log.debug("Fetching telegram file " + telegramFileId + " on first access");
+
+        try {
+            var spoolFile = Files.createTempFile("fetch-", ".part");
+            try {
+                var digest = sha256();
+                try (OutputStream os = new DigestOutputStream(Files.newOutputStream(spoolFile), digest)) {
+                    telegramFileClient.download(filePath, os);
+                }
+                var checksum = String.format("%064x", new BigInteger(1, digest.digest()));
+                return binaryContentService.save(spoolFile, Files.size(spoolFile), checksum);
+            } finally {
+                Files.deleteIfExists(spoolFile);
+            }
+        } catch (IOException | UploadFileException e) {
+            filePaths.invalidate(telegramFileId);
+            throw e instanceof UploadFileException ? (UploadFileException) e : new UploadFileException(e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
 }
@@ -3,16 +3,23 @@ package org.example.service.impl;
 import org.example.dao.AppUserDAO;
 import org.example.service.UserActivationService;
 import org.example.utils.CryptoTool;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
 public class UserActivationServiceImpl implements UserActivationService {
     private final AppUserDAO appUserDAO;
     private final CryptoTool cryptoTool;
+    private final RabbitTemplate rabbitTemplate;
 
-    public UserActivationServiceImpl(AppUserDAO appUserDAO, CryptoTool cryptoTool) {
+    @Value("${spring.rabbitmq.exchanges.app-user-invalidation}")
+    private String appUserInvalidationExchange;
+
+    public UserActivationServiceImpl(AppUserDAO appUserDAO, CryptoTool cryptoTool, RabbitTemplate rabbitTemplate) {
         this.appUserDAO = appUserDAO;
         this.cryptoTool = cryptoTool;
+        this.rabbitTemplate = rabbitTemplate;
     }
 
     @Override
@@ -21,8 +28,8 @@ public class UserActivationServiceImpl implements UserActivationService {
         var optional = appUserDAO.findById(userId);
         if(optional.isPresent()){
             var user = optional.get();
-            user.setActive(true);
-            appUserDAO.save(user);
+            appUserDAO.activate(user.getId());
+            rabbitTemplate.convertAndSend(appUserInvalidationExchange, "", user.getTelegramUserId());
             return true;
         }
 